@@ -0,0 +1,77 @@
+package study.querydsl.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.QuerydslApplication;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 벤치마크용 스프링 컨텍스트
+ * 인메모리 H2 로 애플리케이션을 띄우고, member 테이블에 원하는 건수의 데이터를 JDBC 배치로 채워준다.
+ * SQL 로그, p6spy, H2 의 같은 쿼리 결과 재사용(OPTIMIZE_REUSE_RESULTS) 은 측정값을 왜곡하므로 끈다.
+ * (application.yml 보다 우선하도록 커맨드라인 인자로 넘김, 벤치마크별 설정은 args 로 추가)
+ */
+public final class BenchmarkContext {
+
+    public static final int TEAM_COUNT = 10;
+
+    private BenchmarkContext() {
+    }
+
+    public static ConfigurableApplicationContext start(int memberCount, String... args) {
+        return start(WebApplicationType.NONE, memberCount, args);
+    }
+
+    /**
+     * 부하 테스트처럼 HTTP 로 호출할 때는 WebApplicationType.SERVLET 으로 톰캣까지 띄운다. (포트는 args 로)
+     */
+    public static ConfigurableApplicationContext start(WebApplicationType webApplicationType, int memberCount, String... args) {
+        List<String> allArgs = new ArrayList<>(List.of(
+                "--spring.profiles.active=bench",
+                "--spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1;OPTIMIZE_REUSE_RESULTS=FALSE",
+                "--spring.jpa.properties.hibernate.format_sql=false",
+                "--spring.jpa.properties.hibernate.use_sql_comments=false",
+                "--decorator.datasource.enabled=false",
+                "--logging.level.root=warn",
+                "--logging.level.org.hibernate.SQL=warn",
+                "--logging.level.org.hibernate.type=warn"
+        ));
+        allArgs.addAll(List.of(args));
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(webApplicationType)
+                .run(allArgs.toArray(new String[0]));
+        insertMembers(context.getBean(JdbcTemplate.class), memberCount);
+        return context;
+    }
+
+    private static void insertMembers(JdbcTemplate jdbcTemplate, int memberCount) {
+        List<Object[]> teams = new ArrayList<>();
+        for (long i = 1; i <= TEAM_COUNT; i++) {
+            teams.add(new Object[]{i, "team" + i});
+        }
+        jdbcTemplate.batchUpdate("insert into team (team_id, name) values (?, ?)", teams);
+
+        List<Object[]> members = new ArrayList<>();
+        for (long i = 1; i <= memberCount; i++) {
+            members.add(new Object[]{TEAM_COUNT + i, "member" + i, (int) (i % 100), i % TEAM_COUNT + 1});
+            if (members.size() == 10_000) {
+                insertMemberBatch(jdbcTemplate, members);
+            }
+        }
+        insertMemberBatch(jdbcTemplate, members);
+
+        //id 를 직접 넣었으므로 JPA 로 저장할 때 겹치지 않도록 시퀀스를 뒤로 보낸다.
+        jdbcTemplate.execute("alter sequence team_seq restart with " + (TEAM_COUNT + 1));
+        jdbcTemplate.execute("alter sequence member_seq restart with " + (TEAM_COUNT + memberCount + 1));
+    }
+
+    private static void insertMemberBatch(JdbcTemplate jdbcTemplate, List<Object[]> members) {
+        jdbcTemplate.batchUpdate("insert into member (member_id, username, age, team_id) values (?, ?, ?, ?)", members);
+        members.clear();
+    }
+}
@@ -0,0 +1,78 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 회원 100만 건 저장 (MemberJpaRepository.saveAll)
+ * batchSize=1 은 JDBC 배치 없이 한 건씩 insert, 100 은 100개씩 배치 insert
+ * flush, clear 단위(member.insert.chunk-size)는 CHUNK_SIZE 로 고정하고 JDBC 배치 크기만 바꾼다.
+ * 두 경우 모두 pooled-lo 시퀀스를 사용하므로 시퀀스 조회는 100건당 1번이다.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class MemberInsertBenchmark {
+
+    private static final int MEMBER_COUNT = 1_000_000;
+    private static final int CHUNK_SIZE = 1000;
+
+    @Param({"1", "100"})
+    int batchSize;
+
+    ConfigurableApplicationContext context;
+    MemberJpaRepository memberJpaRepository;
+    TransactionTemplate transactionTemplate;
+    JdbcTemplate jdbcTemplate;
+    Team team;
+    List<Member> members;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(0,
+                "--spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize,
+                "--member.insert.chunk-size=" + CHUNK_SIZE);
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        EntityManager em = context.getBean(EntityManager.class);
+        team = new Team("insertTeam");
+        transactionTemplate.executeWithoutResult(status -> em.persist(team));
+    }
+
+    @Setup(Level.Invocation)
+    public void prepareMembers() {
+        jdbcTemplate.execute("truncate table member");
+        team.getMembers().clear();
+        members = new ArrayList<>(MEMBER_COUNT);
+        for (int i = 0; i < MEMBER_COUNT; i++) {
+            members.add(new Member("member" + i, i % 100, team));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Member> saveAll() {
+        transactionTemplate.executeWithoutResult(status -> memberJpaRepository.saveAll(members));
+        return members;
+    }
+}
@@ -0,0 +1,54 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * offset 페이징(searchPageComplex) vs 지연 조인 페이징(searchPageDeferredJoin)
+ * 페이지 번호가 커질수록(건너뛰는 로우가 많을수록) 두 방식의 차이가 벌어진다.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class MemberPagingBenchmark {
+
+    private static final int MEMBER_COUNT = 100_000;
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"0", "500", "4900"})
+    int page;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+    MemberSearchCondition condition;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(MEMBER_COUNT);
+        memberRepository = context.getBean(MemberRepository.class);
+        condition = new MemberSearchCondition();
+        condition.setAgeGoe(10);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> offset() {
+        return memberRepository.searchPageComplex(condition, PageRequest.of(page, PAGE_SIZE));
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> deferredJoin() {
+        return memberRepository.searchPageDeferredJoin(condition, PageRequest.of(page, PAGE_SIZE));
+    }
+}
@@ -0,0 +1,149 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberDtoBean;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.dto.UserDto;
+import study.querydsl.dto.UserDtoBean;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * Querydsl 프로젝션 방식별 처리량, 할당량 비교 (QuerydslMiddleTest 의 프로젝션 예제들)
+ * 호출 1번이 rows 건 전체를 조회하므로, 로우당 할당량은 -prof gc 의 gc.alloc.rate.norm / rows 로 계산한다.
+ * ex) ./gradlew jmh -Pjmh.includes=MemberProjectionBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class MemberProjectionBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int rows;
+
+    ConfigurableApplicationContext context;
+    JPAQueryFactory queryFactory;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(rows);
+        queryFactory = context.getBean(JPAQueryFactory.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * 프로퍼티 접근 (기본 생성자 + setter)
+     */
+    @Benchmark
+    public List<MemberDto> bean() {
+        return queryFactory
+                .select(Projections.bean(MemberDto.class, member.username, member.age))
+                .from(member)
+                .fetch();
+    }
+
+    /**
+     * 필드 직접 접근
+     */
+    @Benchmark
+    public List<MemberDto> fields() {
+        return queryFactory
+                .select(Projections.fields(MemberDto.class, member.username, member.age))
+                .from(member)
+                .fetch();
+    }
+
+    /**
+     * 생성자 사용 (리플렉션)
+     */
+    @Benchmark
+    public List<MemberDto> constructor() {
+        return queryFactory
+                .select(Projections.constructor(MemberDto.class, member.username, member.age))
+                .from(member)
+                .fetch();
+    }
+
+    /**
+     * 필드 이름이 다를 때 별칭(as, ExpressionUtils.as)
+     * > 참고: QuerydslMiddleTest 처럼 서브쿼리(select max(age))에 별칭을 주면, 벤치마크 설정(OPTIMIZE_REUSE_RESULTS=FALSE)에서는
+     * > 로우마다 서브쿼리를 다시 실행해서 O(rows^2) 이 된다. (1000건에서도 초당 10회 미만) 프로젝션 비용 비교가 목적이므로 경로에 별칭을 준다.
+     */
+    @Benchmark
+    public List<UserDto> fieldsWithAlias() {
+        return queryFactory
+                .select(Projections.fields(UserDto.class,
+                        member.username.as("name"),
+                        ExpressionUtils.as(member.age, "age")
+                ))
+                .from(member)
+                .fetch();
+    }
+
+    /**
+     * @QueryBean 생성 빈 프로젝션 (프로퍼티 접근이지만 리플렉션 없음)
+     */
+    @Benchmark
+    public List<MemberDto> queryBean() {
+        return queryFactory
+                .select(MemberDtoBean.of(member.username, member.age))
+                .from(member)
+                .fetch();
+    }
+
+    @Benchmark
+    public List<UserDto> queryBeanWithAlias() {
+        return queryFactory
+                .select(UserDtoBean.of(
+                        member.username.as("name"),
+                        ExpressionUtils.as(member.age, "age")
+                ))
+                .from(member)
+                .fetch();
+    }
+
+    /**
+     * @QueryProjection (QMemberDto)
+     */
+    @Benchmark
+    public List<MemberDto> queryProjection() {
+        return queryFactory
+                .select(new QMemberDto(member.username, member.age))
+                .from(member)
+                .fetch();
+    }
+
+    /**
+     * @QueryProjection + 팀 조인 (검색 API 에서 쓰는 MemberTeamDto)
+     */
+    @Benchmark
+    public List<MemberTeamDto> queryProjectionWithTeam() {
+        return queryFactory
+                .select(new QMemberTeamDto(
+                        member.id,
+                        member.username,
+                        member.age,
+                        team.id,
+                        team.name
+                ))
+                .from(member)
+                .leftJoin(member.team, team)
+                .fetch();
+    }
+}
@@ -0,0 +1,67 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.jpa.QueryHints;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 회원 엔티티 10,000건 페이지 조회 (트랜잭션 시작 ~ 커밋)
+ * - managed : 쓰기 트랜잭션, 엔티티마다 스냅샷을 만들고 커밋 시 변경 감지(dirty checking)
+ * - readOnly : 읽기 전용 트랜잭션 + org.hibernate.readOnly 힌트 (Querydsl4RepositorySupport 조회 방식)
+ *
+ * 메모리는 -prof gc 의 gc.alloc.rate.norm (B/op) 으로 비교한다.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class MemberReadOnlyBenchmark {
+
+    private static final int MEMBER_COUNT = 100_000;
+    private static final int PAGE_SIZE = 10_000;
+
+    @Param({"managed", "readOnly"})
+    String mode;
+
+    ConfigurableApplicationContext context;
+    EntityManager em;
+    TransactionTemplate transactionTemplate;
+    boolean readOnly;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(MEMBER_COUNT);
+        em = context.getBean(EntityManager.class);
+        readOnly = "readOnly".equals(mode);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        transactionTemplate.setReadOnly(readOnly);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int page() {
+        return transactionTemplate.execute(status -> {
+            List<Member> members = new JPAQueryFactory(em)
+                    .selectFrom(member)
+                    .orderBy(member.id.asc())
+                    .offset(PAGE_SIZE)
+                    .limit(PAGE_SIZE)
+                    .setHint(QueryHints.HINT_READONLY, readOnly)
+                    .fetch();
+            return members.size();
+        });
+    }
+}
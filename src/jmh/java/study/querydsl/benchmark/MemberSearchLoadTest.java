@@ -0,0 +1,135 @@
+package study.querydsl.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 검색 API 부하 테스트 (JMH 가 아닌 main, 서버와 클라이언트를 각각 다른 JVM 으로 실행)
+ * 동시 접속 수만큼의 클라이언트가 응답을 받자마자 다음 요청을 보내고(closed loop), 처리량과 응답 시간 분포를 출력한다.
+ *
+ * 서버: 회원 10만건, /v3 (톰캣 요청 스레드에서 JDBC) 와 /async/v3 (MemberSearchExecutor 에서 JDBC) 를 함께 띄운다.
+ *   java ... study.querydsl.benchmark.MemberSearchLoadTest server 8080 [추가 설정...]
+ * 클라이언트:
+ *   java ... study.querydsl.benchmark.MemberSearchLoadTest client http://localhost:8080/v3/members?size=20 1000 10 30
+ *   (동시 접속 수, 워밍업 초, 측정 초)
+ *
+ * 200 응답과 그 외(503 등 거절, 오류)를 따로 센다. 응답 시간 분포는 전체 요청 기준이다.
+ */
+public final class MemberSearchLoadTest {
+
+    private static final int MEMBER_COUNT = 100_000;
+    private static final int MAX_SAMPLES = 10_000_000;
+
+    private MemberSearchLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if ("server".equals(args[0])) {
+            String[] extra = Arrays.copyOfRange(args, 2, args.length);
+            String[] serverArgs = new String[extra.length + 4];
+            serverArgs[0] = "--server.port=" + args[1];
+            serverArgs[1] = "--member.async.enabled=true";
+            //동시 접속을 받아두는 건 톰캣이, 동시 실행 수 제한은 애플리케이션(bulkhead, 스레드 풀)이 한다.
+            serverArgs[2] = "--server.tomcat.max-connections=20000";
+            serverArgs[3] = "--server.tomcat.accept-count=10000";
+            System.arraycopy(extra, 0, serverArgs, 4, extra.length);
+            BenchmarkContext.start(WebApplicationType.SERVLET, MEMBER_COUNT, serverArgs);
+            System.out.println("server started");
+            return;
+        }
+        client(URI.create(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+    }
+
+    private static void client(URI uri, int concurrency, int warmupSeconds, int measureSeconds) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).build();
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(60)).GET().build();
+        Recorder recorder = new Recorder();
+        CountDownLatch done = new CountDownLatch(concurrency);
+
+        for (int i = 0; i < concurrency; i++) {
+            send(client, request, recorder, done);
+        }
+        TimeUnit.SECONDS.sleep(warmupSeconds);
+        recorder.start();
+        TimeUnit.SECONDS.sleep(measureSeconds);
+        recorder.stop();
+        done.await(90, TimeUnit.SECONDS);
+
+        recorder.print(uri, concurrency, measureSeconds);
+    }
+
+    private static void send(HttpClient client, HttpRequest request, Recorder recorder, CountDownLatch done) {
+        long start = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, e) -> {
+            recorder.record(start, System.nanoTime(), response != null ? response.statusCode() : -1);
+            if (recorder.stopped) {
+                done.countDown();
+            } else {
+                send(client, request, recorder, done);
+            }
+        });
+    }
+
+    private static final class Recorder {
+
+        private final long[] latencies = new long[MAX_SAMPLES];
+        private final AtomicInteger samples = new AtomicInteger();
+        private final AtomicLong ok = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private volatile boolean measuring;
+        private volatile boolean stopped;
+
+        void start() {
+            measuring = true;
+        }
+
+        void stop() {
+            measuring = false;
+            stopped = true;
+        }
+
+        void record(long start, long end, int status) {
+            if (!measuring) {
+                return;
+            }
+            if (status == 200) {
+                ok.incrementAndGet();
+            } else if (status == 503) {
+                rejected.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+            }
+            int index = samples.getAndIncrement();
+            if (index < MAX_SAMPLES) {
+                latencies[index] = end - start;
+            }
+        }
+
+        void print(URI uri, int concurrency, int seconds) {
+            long[] sorted = Arrays.copyOf(latencies, Math.min(samples.get(), MAX_SAMPLES));
+            Arrays.sort(sorted);
+            System.out.printf("%s clients=%d ok/s=%.0f 503/s=%.0f errors=%d p50=%dms p99=%dms max=%dms%n",
+                    uri.getPath(), concurrency, (double) ok.get() / seconds, (double) rejected.get() / seconds, failed.get(),
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 1.0));
+        }
+
+        private static long percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+            return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, index)]);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberQueryRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 호출마다 Querydsl 로 JPQL 을 만드는 검색(MemberQueryRepository.search) vs
+ * 조건 모양별 JPQL 템플릿 캐시를 쓰는 검색(MemberJpaRepository.search)
+ * 결과가 1건인 조건으로 조회해서 DB 시간보다 쿼리 생성 비용이 잘 드러나게 한다.
+ * 호출당 할당량은 -prof gc 로 확인
+ * (MemberQueryRepository 의 결과 캐시는 끄고 측정)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class MemberSearchTemplateBenchmark {
+
+    ConfigurableApplicationContext context;
+    MemberQueryRepository memberQueryRepository;
+    MemberJpaRepository memberJpaRepository;
+    MemberSearchCondition condition;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(1_000, "--member.search-cache.enabled=false");
+        memberQueryRepository = context.getBean(MemberQueryRepository.class);
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        condition = new MemberSearchCondition();
+        condition.setUsername("member500");
+        condition.setTeamName("team1");
+        condition.setAgeGoe(0);
+        condition.setAgeLoe(99);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> querydsl() {
+        return memberQueryRepository.search(condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> template() {
+        return memberJpaRepository.search(condition);
+    }
+}
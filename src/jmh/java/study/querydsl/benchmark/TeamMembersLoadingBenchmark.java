@@ -0,0 +1,91 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.TeamRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 팀 목록을 조회하고 팀마다 회원 목록(Team.members)을 순회
+ * - lazy : 팀마다 지연 로딩 (default_batch_fetch_size=1, 1 + 팀 수 만큼 쿼리)
+ * - batch : 100개 팀씩 IN 쿼리로 함께 로딩 (default_batch_fetch_size=100)
+ * - fetchJoin : TeamRepository.findDistinctByIdIn, 팀과 회원을 쿼리 한 번으로 조회
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class TeamMembersLoadingBenchmark {
+
+    private static final int MEMBERS_PER_TEAM = 10;
+
+    @Param({"100", "1000"})
+    int teamCount;
+
+    @Param({"lazy", "batch", "fetchJoin"})
+    String loading;
+
+    ConfigurableApplicationContext context;
+    TeamRepository teamRepository;
+    TransactionTemplate transactionTemplate;
+    List<Long> teamIds;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(0,
+                "--spring.jpa.properties.hibernate.default_batch_fetch_size=" + ("lazy".equals(loading) ? 1 : 100),
+                "--member.n-plus-one.enabled=false");
+        teamRepository = context.getBean(TeamRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        transactionTemplate.setReadOnly(true);
+        teamIds = insertTeams(context.getBean(JdbcTemplate.class));
+    }
+
+    /**
+     * BenchmarkContext 의 팀, 회원과 겹치지 않도록 큰 id 를 사용
+     */
+    private List<Long> insertTeams(JdbcTemplate jdbcTemplate) {
+        List<Long> ids = new ArrayList<>();
+        List<Object[]> teams = new ArrayList<>();
+        List<Object[]> members = new ArrayList<>();
+        for (long t = 0; t < teamCount; t++) {
+            long teamId = 1_000_000 + t;
+            ids.add(teamId);
+            teams.add(new Object[]{teamId, "loadingTeam" + t});
+            for (int m = 0; m < MEMBERS_PER_TEAM; m++) {
+                members.add(new Object[]{teamId * MEMBERS_PER_TEAM + m, "loadingMember" + m, m, teamId});
+            }
+        }
+        jdbcTemplate.batchUpdate("insert into team (team_id, name) values (?, ?)", teams);
+        jdbcTemplate.batchUpdate("insert into member (member_id, username, age, team_id) values (?, ?, ?, ?)", members);
+        return ids;
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int walkMembers() {
+        return transactionTemplate.execute(status -> {
+            List<Team> teams = "fetchJoin".equals(loading)
+                    ? teamRepository.findDistinctByIdIn(teamIds)
+                    : teamRepository.findAllById(teamIds);
+            int ages = 0;
+            for (Team team : teams) {
+                for (Member member : team.getMembers()) {
+                    ages += member.getAge();
+                }
+            }
+            return ages;
+        });
+    }
+}
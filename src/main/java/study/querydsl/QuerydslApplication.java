@@ -4,6 +4,8 @@ import com.querydsl.jpa.impl.JPAQueryFactory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import study.querydsl.repository.support.InstrumentedJPAQueryFactory;
+import study.querydsl.repository.support.QueryInstrumentation;
 
 import javax.persistence.EntityManager;
 
@@ -18,8 +20,8 @@ public class QuerydslApplication {
 	 * JPAQueryFactory 를 빈에 등록해줌. 장단점이 있으니 잘 취사선택하면 됨.
 	 */
 	@Bean
-	JPAQueryFactory jpaQueryFactory(EntityManager em) {
-		return new JPAQueryFactory(em);
+	JPAQueryFactory jpaQueryFactory(EntityManager em, QueryInstrumentation instrumentation) {
+		return new InstrumentedJPAQueryFactory(em, instrumentation);
 	}
 
 }
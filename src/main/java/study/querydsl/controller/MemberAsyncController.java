@@ -0,0 +1,64 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 비동기 검색 API (member.async.enabled=true 일 때만 등록)
+ * /async/v1 ~ v3 는 /v1 ~ v3 와 같은 검색을 MemberSearchExecutor 에서 실행하고 CompletableFuture 로 응답한다. (서블릿 비동기 처리)
+ * 톰캣 요청 스레드는 JDBC 호출 동안 막히지 않으므로, 동시 접속이 많을 때 요청 스레드 풀 대신 JDBC 스레드 풀 크기로 동시 실행을 제한한다.
+ *
+ * 시간 예산은 요청 스레드에서 열어서 큐 대기 시간도 포함하고, 나머지(동시 실행 수 제한, 503 응답)는 MemberController 와 같다.
+ * (MemberSearchService, MemberSearchExceptionHandler)
+ * > 참고: N+1 감지의 요청 범위(NPlusOneDetectionFilter)는 요청 스레드에만 열리므로 여기서는 트랜잭션 범위로 센다.
+ */
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/async")
+@ConditionalOnProperty(name = "member.async.enabled", havingValue = "true")
+public class MemberAsyncController {
+
+    private static final String REQUEST_TIMEOUT = "X-Request-Timeout";
+
+    private final MemberSearchService memberSearchService;
+    private final MemberSearchExecutor executor;
+
+    @GetMapping("/v1/members")
+    public CompletableFuture<List<MemberTeamDto>> searchMemberV1(MemberSearchCondition condition,
+                                                                 @RequestHeader(value = REQUEST_TIMEOUT, required = false) Long timeoutMillis) {
+        return submit(timeoutMillis, () -> memberSearchService.searchV1(condition));
+    }
+
+    @GetMapping("/v2/members")
+    public CompletableFuture<Page<MemberTeamDto>> searchMemberV2(MemberSearchCondition condition, Pageable pageable,
+                                                                 @RequestParam(defaultValue = "false") boolean approximateTotal,
+                                                                 @RequestHeader(value = REQUEST_TIMEOUT, required = false) Long timeoutMillis) {
+        return submit(timeoutMillis, () -> memberSearchService.searchV2(condition, pageable, approximateTotal));
+    }
+
+    @GetMapping("/v3/members")
+    public CompletableFuture<Page<MemberTeamDto>> searchMemberV3(MemberSearchCondition condition, Pageable pageable,
+                                                                 @RequestParam(defaultValue = "false") boolean deferredJoin,
+                                                                 @RequestParam(defaultValue = "false") boolean approximateTotal,
+                                                                 @RequestHeader(value = REQUEST_TIMEOUT, required = false) Long timeoutMillis) {
+        return submit(timeoutMillis,
+                () -> memberSearchService.searchV3(condition, pageable, deferredJoin, approximateTotal));
+    }
+
+    private <T> CompletableFuture<T> submit(Long timeoutMillis, Supplier<T> search) {
+        return memberSearchService.withDeadline(timeoutMillis, () -> executor.submit(search));
+    }
+}
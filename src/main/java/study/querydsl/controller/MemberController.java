@@ -3,37 +3,99 @@ package study.querydsl.controller;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
-import study.querydsl.repository.MemberJpaRepository;
-import study.querydsl.repository.MemberRepository;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.List;
 
+/**
+ * 검색 API(v1 ~ v4)는 요청마다 쿼리 시간 예산을 연다. (QueryDeadline)
+ * 기본값은 member.request.timeout 이고, X-Request-Timeout 헤더(밀리초)로 더 짧게 줄 수 있다.
+ * 예산을 다 쓰면 실행 중인 쿼리를 취소하고 503 을 응답한다.
+ * 엔드포인트마다 동시 실행 수도 제한한다. (MemberSearchBulkheads, 자리가 없으면 503)
+ * 시간 예산과 동시 실행 수 제한은 MemberSearchService, 503 응답은 MemberSearchExceptionHandler 가 맡는다.
+ */
 @RestController
 @RequiredArgsConstructor
 public class MemberController {
 
-    private final MemberJpaRepository memberJpaRepository;
-    private final MemberRepository memberRepository;
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String REQUEST_TIMEOUT = "X-Request-Timeout";
+
+    /**
+     * 커서 페이징 한 번에 조회할 수 있는 최대 건수 (스프링 데이터 Pageable 의 최대 페이지 크기와 같다)
+     */
+    static final int MAX_SLICE_SIZE = 2000;
+
+    private final MemberSearchService memberSearchService;
+    private final MemberExportService memberExportService;
 
     /**
      * API 컨트롤러
      */
     @GetMapping("/v1/members")
-    public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition) {
-        return memberJpaRepository.search(condition);
+    public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition,
+                                              @RequestHeader(value = REQUEST_TIMEOUT, required = false) Long timeoutMillis) {
+        return memberSearchService.withDeadline(timeoutMillis, () -> memberSearchService.searchV1(condition));
     }
 
+    /**
+     * approximateTotal=true 이면 정확한 전체 카운트 대신 추정 카운트를 사용한다. (응답의 totalEstimated 확인)
+     */
     @GetMapping("/v2/members")
-    public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable) {
-        return memberRepository.searchPageSimple(condition, pageable);
+    public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable,
+                                              @RequestParam(defaultValue = "false") boolean approximateTotal,
+                                              @RequestHeader(value = REQUEST_TIMEOUT, required = false) Long timeoutMillis) {
+        return memberSearchService.withDeadline(timeoutMillis,
+                () -> memberSearchService.searchV2(condition, pageable, approximateTotal));
     }
 
+    /**
+     * deferredJoin=true 이면 id 를 먼저 조회한 뒤 컨텐츠를 채우는 지연 조인 방식으로 조회한다. (offset 이 큰 페이지용)
+     * approximateTotal=true 이면 정확한 전체 카운트 대신 추정 카운트를 사용한다. (응답의 totalEstimated 확인)
+     */
     @GetMapping("/v3/members")
-    public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable) {
-        return memberRepository.searchPageComplex(condition, pageable);
+    public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable,
+                                              @RequestParam(defaultValue = "false") boolean deferredJoin,
+                                              @RequestParam(defaultValue = "false") boolean approximateTotal,
+                                              @RequestHeader(value = REQUEST_TIMEOUT, required = false) Long timeoutMillis) {
+        return memberSearchService.withDeadline(timeoutMillis,
+                () -> memberSearchService.searchV3(condition, pageable, deferredJoin, approximateTotal));
+    }
+
+    /**
+     * 커서 기반 페이징. 응답의 마지막 memberId 를 다음 요청의 cursor 로 넘긴다.
+     * ex) /v4/members?size=20&cursor=120
+     * size 는 1 ~ MAX_SLICE_SIZE, 벗어나면 400
+     */
+    @GetMapping("/v4/members")
+    public Slice<MemberTeamDto> searchMemberV4(MemberSearchCondition condition,
+                                               @RequestParam(required = false) Long cursor,
+                                               @RequestParam(defaultValue = "20") int size,
+                                               @RequestHeader(value = REQUEST_TIMEOUT, required = false) Long timeoutMillis) {
+        if (size < 1 || size > MAX_SLICE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be between 1 and " + MAX_SLICE_SIZE);
+        }
+        return memberSearchService.withDeadline(timeoutMillis, () -> memberSearchService.searchV4(condition, cursor, size));
+    }
+
+    /**
+     * 검색 결과 전체를 NDJSON 스트림으로 내려준다. (조건이 없으면 전체 회원)
+     * 오래 걸리는 것이 정상이므로 시간 예산을 열지 않는다.
+     */
+    @GetMapping(value = "/members/export", produces = NDJSON)
+    public void exportMembers(MemberSearchCondition condition, HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding("UTF-8");
+        memberExportService.export(condition, response.getOutputStream());
     }
 }
@@ -0,0 +1,63 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * 회원 검색 결과를 NDJSON(한 줄에 JSON 하나)으로 내보낸다.
+ * 스트리밍 검색(searchStream)으로 한 건씩 읽어서 바로 응답에 쓰므로, 결과 건수와 상관없이 메모리 사용량이 일정하다.
+ */
+@Component
+@RequiredArgsConstructor
+public class MemberExportService {
+
+    private static final int FLUSH_INTERVAL = 1000;
+
+    private final MemberJpaRepository memberJpaRepository;
+    private final ObjectMapper objectMapper;
+    private final EntityManager em;
+
+    /**
+     * @return 내보낸 건수
+     */
+    @Transactional(readOnly = true)
+    public long export(MemberSearchCondition condition, OutputStream out) throws IOException {
+        long count = 0;
+        try (Stream<MemberTeamDto> stream = memberJpaRepository.searchStream(condition);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+
+            //ObjectMapper 기본 설정(FLUSH_AFTER_WRITE_VALUE)은 한 건마다 응답을 flush 하므로 끈다.
+            ObjectWriter writer = objectMapper.writerFor(MemberTeamDto.class)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            Iterator<MemberTeamDto> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                writer.writeValue(generator, iterator.next());
+                generator.writeRaw('\n');
+
+                //FLUSH_INTERVAL 건마다 클라이언트에 내보내고, 영속성 컨텍스트에 쌓인 것이 있으면 비운다.
+                if (++count % FLUSH_INTERVAL == 0) {
+                    generator.flush();
+                    em.clear();
+                }
+            }
+            generator.flush();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,121 @@
+package study.querydsl.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+import study.querydsl.repository.support.AdaptiveBulkhead;
+import study.querydsl.repository.support.BulkheadFullException;
+import study.querydsl.repository.support.QueryDeadline;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * 검색 API 동시 실행 수 제한 (AdaptiveBulkhead)
+ * 조건 없는 /v1/members 처럼 무거운 검색이 몰려도 커넥션 풀을 다 차지하지 못하게 해서 다른 엔드포인트가 같이 멈추지 않게 한다.
+ *
+ * 두 단계로 제한한다.
+ * - 전체: 모든 엔드포인트가 함께 쓰는 고정 limit, 커넥션 풀 크기(spring.datasource.hikari.maximum-pool-size)에서
+ *   카운트 동시 실행 풀 크기(member.concurrent-count.pool-size, 켜져 있을 때만)를 뺀 값
+ *   카운트 쿼리를 별도 커넥션에서 실행하면 요청 하나가 커넥션을 2개 쓰므로 그만큼 빼둔다. (ConcurrentCountExecutor)
+ * - 엔드포인트별: 측정한 응답 시간으로 limit 이 바뀐다. 범위는 전체 limit 의 절반 ~ 전체 limit 이고,
+ *   전체 limit 자리를 얻지 못하거나 쿼리 타임아웃으로 실패하면 과부하로 보고 줄인다.
+ *   하한이 없으면 포화 상태에서 limit 이 1 까지 내려가 커넥션 풀이 놀게 되므로 커넥션 풀 크기로 하한을 둔다.
+ *
+ * 자리가 없으면 요청의 남은 시간 예산(QueryDeadline, 없으면 member.request.timeout)까지 기다리고, 그 안에 자리가 나지 않으면 503 으로 거절한다.
+ * 예산 안에 처리할 수 있는 요청은 기다렸다가 처리하고, 어차피 예산을 넘길 요청만 거절한다.
+ *
+ * 설정: member.bulkhead.* 가 기본값, member.bulkhead.{endpoint}.* 로 엔드포인트마다 덮어쓴다. (ex. member.bulkhead.v1.max-limit)
+ * 따로 설정하지 않으면 커넥션 풀 크기와 요청 시간 예산으로 정한다.
+ * 메트릭: member.search.bulkhead.limit|in-flight|queued|wait|rejected{endpoint}, 전체는 endpoint=all
+ * 커넥션 풀 자체의 포화 상태는 hikaricp.connections.active|pending 으로 함께 본다. (actuator)
+ */
+@Component
+public class MemberSearchBulkheads {
+
+    private static final String PREFIX = "member.bulkhead.";
+    private static final String NAME = "member.search.bulkhead";
+
+    private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int globalLimit;
+    private final AdaptiveBulkhead global;
+    private final long requestTimeoutNanos;
+
+    public MemberSearchBulkheads(Environment environment, MeterRegistry meterRegistry,
+                                 @Value("${member.bulkhead.enabled:true}") boolean enabled,
+                                 @Value("${spring.datasource.hikari.maximum-pool-size:10}") int connectionPoolSize,
+                                 @Value("${member.concurrent-count.enabled:false}") boolean concurrentCount,
+                                 @Value("${member.concurrent-count.pool-size:4}") int countPoolSize,
+                                 @Value("${member.request.timeout:3s}") Duration requestTimeout) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.globalLimit = Math.max(1, connectionPoolSize - (concurrentCount ? countPoolSize : 0));
+        this.requestTimeoutNanos = requestTimeout.toNanos();
+        this.global = new AdaptiveBulkhead(NAME, Tags.of("endpoint", "all"),
+                globalLimit, globalLimit, globalLimit, Integer.MAX_VALUE, meterRegistry);
+    }
+
+    public <T> T execute(String endpoint, Supplier<T> search) {
+        if (!enabled) {
+            return search.get();
+        }
+        Endpoint target = endpoints.computeIfAbsent(endpoint, this::create);
+        QueryDeadline deadline = QueryDeadline.current();
+        long remainingNanos = deadline != null ? deadline.remainingNanos() : requestTimeoutNanos;
+        long maxWaitNanos = target.configuredWaitNanos >= 0 ? Math.min(target.configuredWaitNanos, remainingNanos) : remainingNanos;
+        //전체 limit 은 엔드포인트 자리를 얻은 뒤 남은 대기 시간 안에서 얻는다.
+        long waitUntil = System.nanoTime() + maxWaitNanos;
+        return target.bulkhead.execute(maxWaitNanos,
+                e -> e instanceof QueryTimeoutException || e instanceof BulkheadFullException,
+                () -> global.execute(Math.max(0, waitUntil - System.nanoTime()), e -> false, search));
+    }
+
+    int getGlobalLimit() {
+        return globalLimit;
+    }
+
+    private Endpoint create(String endpoint) {
+        int maxLimit = Math.min(globalLimit, property(endpoint, "max-limit", Integer.class, globalLimit));
+        int minLimit = Math.min(maxLimit, property(endpoint, "min-limit", Integer.class, Math.max(1, globalLimit / 2)));
+        AdaptiveBulkhead bulkhead = new AdaptiveBulkhead(NAME, Tags.of("endpoint", endpoint),
+                property(endpoint, "initial-limit", Integer.class, maxLimit),
+                minLimit,
+                maxLimit,
+                property(endpoint, "max-queue", Integer.class, Integer.MAX_VALUE),
+                meterRegistry);
+        Duration maxQueueWait = property(endpoint, "max-queue-wait", Duration.class, null);
+        return new Endpoint(bulkhead, maxQueueWait != null ? maxQueueWait.toNanos() : -1);
+    }
+
+    private <V> V property(String endpoint, String key, Class<V> type, V defaultValue) {
+        V value = environment.getProperty(PREFIX + endpoint + "." + key, type);
+        if (value != null) {
+            return value;
+        }
+        value = environment.getProperty(PREFIX + key, type);
+        return value != null ? value : defaultValue;
+    }
+
+    private static final class Endpoint {
+
+        private final AdaptiveBulkhead bulkhead;
+        /**
+         * 설정한 큐 대기 시간, 음수면 요청의 남은 시간 예산까지
+         */
+        private final long configuredWaitNanos;
+
+        private Endpoint(AdaptiveBulkhead bulkhead, long configuredWaitNanos) {
+            this.bulkhead = bulkhead;
+            this.configuredWaitNanos = configuredWaitNanos;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package study.querydsl.controller;
+
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import study.querydsl.repository.support.BulkheadFullException;
+
+/**
+ * 검색 API(MemberController, MemberAsyncController)의 과부하 응답
+ */
+@RestControllerAdvice(assignableTypes = {MemberController.class, MemberAsyncController.class})
+public class MemberSearchExceptionHandler {
+
+    /**
+     * 쿼리 시간 예산을 다 쓰면 바로 503 (클라이언트는 재시도하거나 조건을 좁힌다)
+     */
+    @ExceptionHandler(QueryTimeoutException.class)
+    public ResponseEntity<String> queryTimeout(QueryTimeoutException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+    }
+
+    /**
+     * 동시 실행 수 제한에 걸리면 바로 503, 잠시 뒤 재시도
+     */
+    @ExceptionHandler(BulkheadFullException.class)
+    public ResponseEntity<String> bulkheadFull(BulkheadFullException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getMessage());
+    }
+}
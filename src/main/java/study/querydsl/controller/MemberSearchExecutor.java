@@ -0,0 +1,67 @@
+package study.querydsl.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import study.querydsl.repository.support.BulkheadFullException;
+import study.querydsl.repository.support.QueryContext;
+import study.querydsl.repository.support.QueryDeadline;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 비동기 검색 API(MemberAsyncController)용 JDBC 전용 스레드 풀
+ * 톰캣 요청 스레드는 검색을 넘기고 바로 반환되고, JDBC 호출은 이 풀의 스레드만 막는다.
+ * 풀 크기는 커넥션 풀 크기 정도로 두고, 대기 큐가 가득 차면 바로 거절한다. (BulkheadFullException, 503)
+ *
+ * 호출한 스레드의 쿼리 마감 시간(QueryDeadline)을 넘겨서 여므로 큐 대기 시간도 요청의 시간 예산에 포함된다.
+ *
+ * 메트릭: executor.*{name=member.search} (active, queued, completed 등, ExecutorServiceMetrics)
+ */
+@Component
+@ConditionalOnProperty(name = "member.async.enabled", havingValue = "true")
+public class MemberSearchExecutor implements DisposableBean {
+
+    private final ThreadPoolExecutor executor;
+
+    public MemberSearchExecutor(MeterRegistry meterRegistry,
+                                @Value("${member.async.pool-size:10}") int poolSize,
+                                @Value("${member.async.queue-size:1000}") int queueSize) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "member-search-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        new ExecutorServiceMetrics(executor, "member.search", Tags.empty()).bindTo(meterRegistry);
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> search) {
+        QueryContext context = QueryContext.current();
+        QueryDeadline deadline = QueryDeadline.current();
+        try {
+            return CompletableFuture.supplyAsync(() -> QueryContext.open(context)
+                    .call(() -> QueryDeadline.open(deadline).call(search::get)), executor);
+        } catch (RejectedExecutionException e) {
+            throw new BulkheadFullException("member search executor is full (" + executor.getQueue().size() + " queued)");
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,86 @@
+package study.querydsl.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.support.QueryDeadline;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 검색 API(MemberController, MemberAsyncController)가 함께 쓰는 검색 실행
+ * - withDeadline: 요청마다 쿼리 시간 예산을 연다. (QueryDeadline, 기본값 member.request.timeout)
+ * - searchV1 ~ V4: 엔드포인트별 검색을 동시 실행 수 제한(MemberSearchBulkheads) 안에서 실행한다.
+ *
+ * 비동기 검색은 요청 스레드에서 시간 예산을 열고 MemberSearchExecutor 로 넘기므로, 예산에 스레드 풀 큐 대기 시간도 포함된다.
+ */
+@Component
+public class MemberSearchService {
+
+    private final MemberJpaRepository memberJpaRepository;
+    private final MemberRepository memberRepository;
+    private final MemberSearchBulkheads bulkheads;
+    private final Duration requestTimeout;
+
+    public MemberSearchService(MemberJpaRepository memberJpaRepository,
+                               MemberRepository memberRepository,
+                               MemberSearchBulkheads bulkheads,
+                               @Value("${member.request.timeout:3s}") Duration requestTimeout) {
+        this.memberJpaRepository = memberJpaRepository;
+        this.memberRepository = memberRepository;
+        this.bulkheads = bulkheads;
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * 시간 예산 안에서 call 을 실행한다. 동시 실행 수 제한의 큐 대기 시간도 예산에 포함된다.
+     * @param timeoutMillis X-Request-Timeout 헤더, member.request.timeout 보다 길게 줄 수 없다.
+     */
+    public <T> T withDeadline(Long timeoutMillis, Supplier<T> call) {
+        return QueryDeadline.open(budget(timeoutMillis)).call(call::get);
+    }
+
+    public List<MemberTeamDto> searchV1(MemberSearchCondition condition) {
+        return bulkheads.execute("v1", () -> memberJpaRepository.search(condition));
+    }
+
+    public Page<MemberTeamDto> searchV2(MemberSearchCondition condition, Pageable pageable, boolean approximateTotal) {
+        return bulkheads.execute("v2", () -> {
+            if (approximateTotal) {
+                return memberRepository.searchPageApproximate(condition, pageable);
+            }
+            return memberRepository.searchPageSimple(condition, pageable);
+        });
+    }
+
+    public Page<MemberTeamDto> searchV3(MemberSearchCondition condition, Pageable pageable,
+                                        boolean deferredJoin, boolean approximateTotal) {
+        return bulkheads.execute("v3", () -> {
+            if (approximateTotal) {
+                return memberRepository.searchPageApproximate(condition, pageable);
+            }
+            if (deferredJoin) {
+                return memberRepository.searchPageDeferredJoin(condition, pageable);
+            }
+            return memberRepository.searchPageComplex(condition, pageable);
+        });
+    }
+
+    public Slice<MemberTeamDto> searchV4(MemberSearchCondition condition, Long cursor, int size) {
+        return bulkheads.execute("v4", () -> memberRepository.searchSlice(condition, cursor, size));
+    }
+
+    private Duration budget(Long timeoutMillis) {
+        return timeoutMillis != null && timeoutMillis < requestTimeout.toMillis()
+                ? Duration.ofMillis(Math.max(0, timeoutMillis))
+                : requestTimeout;
+    }
+}
@@ -0,0 +1,38 @@
+package study.querydsl.controller;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import study.querydsl.repository.support.NPlusOneDetector;
+import study.querydsl.repository.support.QueryContext;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * HTTP 요청 하나를 N+1 감지 범위로 연다.
+ * open-in-view 로 컨트롤러, 뷰에서 일어나는 지연 로딩도 같은 범위에서 센다.
+ */
+@Component
+public class NPlusOneDetectionFilter extends OncePerRequestFilter {
+
+    private final NPlusOneDetector detector;
+
+    public NPlusOneDetectionFilter(NPlusOneDetector detector) {
+        this.detector = detector;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        //ServletException, IOException 을 그대로 던져야 하므로 Scope.call 대신 직접 닫는다.
+        QueryContext.Scope scope = detector.open(request.getMethod() + " " + request.getRequestURI(), "request");
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            scope.close();
+        }
+    }
+}
@@ -2,6 +2,8 @@ package study.querydsl.dto;
 
 import lombok.Data;
 
+import static org.springframework.util.StringUtils.hasText;
+
 /**
  * 동적 쿼리에서 조건 객체
  */
@@ -9,9 +11,48 @@ import lombok.Data;
 public class MemberSearchCondition {
     //회원명, 팀명, 나이(ageGoe, ageLoe)
 
+    //조건 모양(shape) 비트
+    public static final int USERNAME = 1;
+    public static final int TEAM_NAME = 1 << 1;
+    public static final int AGE_GOE = 1 << 2;
+    public static final int AGE_LOE = 1 << 3;
+    public static final int SHAPE_COUNT = 1 << 4;
+
     private String username;
     private String teamName;
     private Integer ageGoe;
     private Integer ageLoe;
 
+    /**
+     * 조회 결과가 같은 조건은 equals 도 같도록 정리한 복사본 (캐시 키로 사용)
+     * 빈 문자열 조건은 조회할 때 무시되므로 null 로 바꾼다.
+     */
+    public MemberSearchCondition normalize() {
+        MemberSearchCondition normalized = new MemberSearchCondition();
+        normalized.setUsername(hasText(username) ? username : null);
+        normalized.setTeamName(hasText(teamName) ? teamName : null);
+        normalized.setAgeGoe(ageGoe);
+        normalized.setAgeLoe(ageLoe);
+        return normalized;
+    }
+
+    /**
+     * 어떤 조건이 들어왔는지를 비트마스크로 표현한다. 조건이 4개이므로 쿼리 모양은 0 ~ 15, 16가지 뿐이다.
+     */
+    public int shape() {
+        int shape = 0;
+        if (hasText(username)) {
+            shape |= USERNAME;
+        }
+        if (hasText(teamName)) {
+            shape |= TEAM_NAME;
+        }
+        if (ageGoe != null) {
+            shape |= AGE_GOE;
+        }
+        if (ageLoe != null) {
+            shape |= AGE_LOE;
+        }
+        return shape;
+    }
 }
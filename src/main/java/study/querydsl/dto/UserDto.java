@@ -1,8 +1,10 @@
 package study.querydsl.dto;
 
 import lombok.Data;
+import study.querydsl.projection.QueryBean;
 
 @Data
+@QueryBean
 public class UserDto {
 
     private String name;
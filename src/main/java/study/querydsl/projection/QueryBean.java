@@ -0,0 +1,23 @@
+package study.querydsl.projection;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 리플렉션 없이 값을 채우는 빈 프로젝션 생성 대상 DTO 표시
+ * 컴파일 시점에 같은 패키지에 {DTO 이름}Bean 클래스가 생성된다. (ex. MemberDto -> MemberDtoBean)
+ *
+ * Projections.bean, Projections.fields 처럼 프로퍼티 이름(별칭)으로 값을 매칭하지만,
+ * setter 호출이나 필드 대입을 직접 하는 코드가 만들어지므로 @QueryProjection 처럼 빠르다.
+ * ex) select(MemberDtoBean.of(member.username, member.age))
+ *
+ * 조건: 기본 생성자, 프로퍼티마다 setter 나 private 이 아닌 필드 (lombok @Data, @Setter 도 가능)
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.SOURCE)
+public @interface QueryBean {
+}
@@ -0,0 +1,80 @@
+package study.querydsl.projection;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Visitor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @QueryBean 으로 생성되는 빈 프로젝션의 부모 클래스
+ * 프로퍼티 이름은 생성 시점에 한 번만 찾아서 번호(properties)로 바꿔두고, 로우마다 생성된 코드가 번호로 값을 대입한다.
+ *
+ * Projections.bean 은 매칭되는 프로퍼티가 없으면 조용히 무시하지만, 여기서는 생성 시점에 예외가 발생한다.
+ */
+public abstract class QueryBeanExpression<T> extends FactoryExpressionBase<T> {
+
+    private final List<Expression<?>> args;
+
+    /**
+     * args[i] 가 대입될 프로퍼티 번호 (생성된 클래스의 propertyIndex 결과)
+     */
+    protected final int[] properties;
+
+    protected QueryBeanExpression(Class<? extends T> type, Expression<?>... args) {
+        super(type);
+        this.args = Collections.unmodifiableList(Arrays.asList(args.clone()));
+        this.properties = new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            String property = propertyName(args[i]);
+            properties[i] = propertyIndex(property);
+            if (properties[i] < 0) {
+                throw new IllegalArgumentException(type.getSimpleName() + " 에 " + property + " 프로퍼티가 없습니다.");
+            }
+        }
+    }
+
+    /**
+     * 프로퍼티 이름에 해당하는 번호, 없으면 -1
+     */
+    protected abstract int propertyIndex(String property);
+
+    /**
+     * 경로(member.username)는 경로 이름, 별칭(member.username.as("name"), ExpressionUtils.as(...))은 별칭
+     */
+    private static String propertyName(Expression<?> arg) {
+        if (arg instanceof Path) {
+            return ((Path<?>) arg).getMetadata().getName();
+        }
+        if (arg instanceof Operation && ((Operation<?>) arg).getOperator() == Ops.ALIAS) {
+            return propertyName(((Operation<?>) arg).getArg(1));
+        }
+        throw new IllegalArgumentException("프로퍼티 이름을 알 수 없습니다. 별칭을 지정하세요. " + arg);
+    }
+
+    @Override
+    public List<Expression<?>> getArgs() {
+        return args;
+    }
+
+    @Override
+    public <R, C> R accept(Visitor<R, C> v, C context) {
+        return v.visit(this, context);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        return args.equals(((QueryBeanExpression<?>) obj).args);
+    }
+}
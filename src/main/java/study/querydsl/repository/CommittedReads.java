@@ -0,0 +1,22 @@
+package study.querydsl.repository;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 조회 결과를 프로세스 전역 캐시(MemberCountCache, TeamCache, MemberSearchResultCache)와 주고받아도 되는지
+ *
+ * 쓰기 트랜잭션의 조회 결과에는 플러시했지만 아직 커밋하지 않은 변경이 들어 있을 수 있다. (조회 전 자동 플러시)
+ * - 캐시에 넣으면 다른 트랜잭션이 커밋 전 데이터를 보고, 롤백되면 없는 데이터를 보게 된다.
+ * - 캐시에서 읽으면 자기가 쓴 변경이 빠진 결과를 보게 된다.
+ * 그래서 트랜잭션 밖이거나 읽기 전용 트랜잭션(플러시 없음)일 때만 캐시를 쓰고, 쓰기 트랜잭션에서는 항상 DB 를 조회한다.
+ */
+final class CommittedReads {
+
+    private CommittedReads() {
+    }
+
+    static boolean isCommittedRead() {
+        return !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+}
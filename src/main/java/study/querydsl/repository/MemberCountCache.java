@@ -0,0 +1,112 @@
+package study.querydsl.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.EntityChangedEvent;
+
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 페이징 전체 카운트 캐시
+ * 카운트 쿼리는 조건에 맞는 로우를 모두 읽어야 해서 페이징 조회에서 가장 비싼 쿼리다.
+ * 정규화한 검색 조건을 키로 카운트를 TTL 동안 캐시하고, Member, Team 이 변경되면 전부 무효화한다.
+ * (어떤 조건의 카운트가 바뀌었는지 알 수 없으므로 전체 무효화)
+ * 쓰기 트랜잭션에서는 캐시를 읽지도 쓰지도 않고 항상 카운트 쿼리를 실행한다. (CommittedReads)
+ *
+ * 카운트 쿼리가 도는 사이에 무효화되면 그 결과는 변경 전 값일 수 있다.
+ * 무효화할 때마다 세대(generation)를 올리고, 카운트 쿼리 전에 읽어둔 세대가 바뀌었으면 캐시에 넣지 않는다.
+ */
+@Component
+public class MemberCountCache {
+
+    private final Cache<MemberSearchCondition, Long> cache;
+    private final AtomicLong generation = new AtomicLong();
+
+    public MemberCountCache(@Value("${member.count-cache.ttl:30s}") Duration ttl,
+                            @Value("${member.count-cache.max-size:10000}") long maxSize) {
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    public long get(MemberSearchCondition condition, LongSupplier countQuery) {
+        return get(condition, generation(), countQuery);
+    }
+
+    /**
+     * @param generation 카운트 쿼리를 시작하기 전에 읽은 generation(), 그 사이 무효화되었으면 결과를 캐시하지 않는다.
+     */
+    public long get(MemberSearchCondition condition, long generation, LongSupplier countQuery) {
+        if (!CommittedReads.isCommittedRead()) {
+            return countQuery.getAsLong();
+        }
+        MemberSearchCondition key = condition.normalize();
+        long[] loaded = new long[1];
+        //같은 조건의 동시 요청은 카운트 쿼리 하나를 기다린다. 로딩 중 무효화되었으면 null 을 돌려줘서 캐시에 남기지 않는다.
+        Long count = cache.get(key, k -> {
+            loaded[0] = countQuery.getAsLong();
+            return this.generation.get() == generation ? loaded[0] : null;
+        });
+        if (count == null) {
+            return loaded[0];
+        }
+        removeIfInvalidated(key, generation, count);
+        return count;
+    }
+
+    public OptionalLong getIfPresent(MemberSearchCondition condition) {
+        Long count = CommittedReads.isCommittedRead() ? cache.getIfPresent(condition.normalize()) : null;
+        return count != null ? OptionalLong.of(count) : OptionalLong.empty();
+    }
+
+    /**
+     * @param generation 카운트 쿼리를 시작하기 전에 읽은 generation(), 그 사이 무효화되었으면 넣지 않는다.
+     */
+    public void put(MemberSearchCondition condition, long generation, long count) {
+        if (!CommittedReads.isCommittedRead() || this.generation.get() != generation) {
+            return;
+        }
+        MemberSearchCondition key = condition.normalize();
+        cache.put(key, count);
+        removeIfInvalidated(key, generation, count);
+    }
+
+    /**
+     * 무효화 세대, 카운트 쿼리를 시작하기 전에 읽어서 get, put 에 넘긴다.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    public void invalidateAll() {
+        //세대를 먼저 올린다. 확인과 넣기 사이에 무효화가 끼어들면 넣은 쪽이 다시 확인해서 지운다. (removeIfInvalidated)
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (event.isAnyOf(Member.class, Team.class)) {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * 세대를 확인하고 넣는 사이에 invalidateAll 이 지나갔으면 방금 넣은 값을 지운다.
+     */
+    private void removeIfInvalidated(MemberSearchCondition key, long generation, long count) {
+        if (this.generation.get() != generation) {
+            cache.asMap().remove(key, count);
+        }
+    }
+}
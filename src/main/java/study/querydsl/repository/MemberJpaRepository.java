@@ -5,7 +5,11 @@ import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
@@ -13,10 +17,17 @@ import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.QTeam;
+import study.querydsl.repository.support.InstrumentedJPAQueryFactory;
+import study.querydsl.repository.support.QueryInstrumentation;
+import study.querydsl.repository.support.SingleFlight;
 
 import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.springframework.util.StringUtils.*;
 import static study.querydsl.entity.QMember.*;
@@ -24,17 +35,31 @@ import static study.querydsl.entity.QTeam.*;
 
 /**
  * 순수 JPA 리포지토리
+ * 조회는 읽기 전용 트랜잭션으로 실행한다. (스냅샷 보관, 조회 전 플러시 없음, SimpleJpaRepository 와 같은 방식)
  */
 @Repository
+@Transactional(readOnly = true)
 //@RequiredArgsConstructor
 public class MemberJpaRepository {
 
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
-
-    public MemberJpaRepository(EntityManager em) {
+    private final MemberSearchTemplateCache searchTemplateCache;
+    private final int streamFetchSize;
+    private final int insertChunkSize;
+    private final SingleFlight<MemberSearchCondition, List<MemberTeamDto>> searchFlight;
+
+    public MemberJpaRepository(EntityManager em, MemberSearchTemplateCache searchTemplateCache, MeterRegistry meterRegistry,
+                               QueryInstrumentation instrumentation,
+                               @Value("${member.export.fetch-size:1000}") int streamFetchSize,
+                               @Value("${member.insert.chunk-size:1000}") int insertChunkSize,
+                               @Value("${member.search.coalesce-max-wait:2s}") Duration coalesceMaxWait) {
         this.em = em;
-        this.queryFactory = new JPAQueryFactory(em);
+        this.queryFactory = new InstrumentedJPAQueryFactory(em, instrumentation);
+        this.searchTemplateCache = searchTemplateCache;
+        this.streamFetchSize = streamFetchSize;
+        this.insertChunkSize = insertChunkSize;
+        this.searchFlight = new SingleFlight<>("member.search", coalesceMaxWait, meterRegistry);
     }
 
     /**
@@ -52,10 +77,34 @@ public class MemberJpaRepository {
 //        this.queryFactory = queryFactory;
 //    }
 
+    @Transactional
     public void save(Member member) {
         em.persist(member);
     }
 
+    /**
+     * 대량 저장
+     * member.insert.chunk-size 만큼 persist 하고 flush, clear 를 반복한다.
+     * insert 는 flush 할 때 JDBC 배치 크기(hibernate.jdbc.batch_size)씩 나가고, 영속성 컨텍스트가 커지지 않으므로 건수가 많아도 flush 비용과 메모리가 일정하다.
+     * 청크 크기는 JDBC 배치 크기와 따로 정한다. (배치 크기만 바꿔도 flush 횟수가 같이 바뀌지 않도록, 배치 크기의 배수로 잡아야 배치가 끊기지 않는다)
+     *
+     * > 주의: 트랜잭션 안에서 호출해야 하고, 호출 전에 영속 상태였던 엔티티도 함께 flush 되고 준영속 상태가 된다.
+     * > 주의: 회원의 팀은 미리 저장되어 있어야 한다. (cascade 없음)
+     */
+    @Transactional
+    public void saveAll(Collection<Member> members) {
+        int count = 0;
+        for (Member member : members) {
+            em.persist(member);
+            if (++count % insertChunkSize == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+    }
+
     public Optional<Member> findById(Long id) {
         Member findMember = em.find(Member.class, id);
         return Optional.ofNullable(findMember);
@@ -115,7 +164,43 @@ public class MemberJpaRepository {
                 .fetch();
     }
 
+    /**
+     * 아래 where 파라미터 방식과 같은 쿼리를 조건 모양별로 미리 만들어 둔 JPQL 로 실행한다.
+     * 호출마다 Querydsl 표현식 트리 생성, JPQL 직렬화를 하지 않는다. (MemberSearchTemplateCache 참고)
+     *
+     * 같은 조건으로 동시에 들어온 검색은 하나의 쿼리 결과를 함께 받는다. (SingleFlight)
+     * > 주의: 결과 목록은 여러 호출이 공유하므로 수정할 수 없다.
+     */
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        return searchFlight.execute(condition.normalize(),
+                () -> Collections.unmodifiableList(searchTemplateCache.search(condition)));
+//        return queryFactory
+//                .select(new QMemberTeamDto(
+//                        member.id,
+//                        member.username,
+//                        member.age,
+//                        team.id,
+//                        team.name
+//                ))
+//                .from(member)
+//                .leftJoin(member.team, team)
+//                .where(
+//                        usernameEq(condition.getUsername()),
+//                        teamNameEq(condition.getTeamName()),
+//                        ageGoe(condition.getAgeGoe()),
+//                        ageLoe(condition.getAgeLoe())
+//                )
+//                .fetch();
+    }
+
+    /**
+     * 대량 조회용 스트리밍 검색
+     * 결과를 List 로 모두 메모리에 올리지 않고, JDBC fetch size 만큼씩 가져오면서 한 건씩 처리한다. (ScrollableResults)
+     *
+     * > 주의: 스트림을 다 읽을 때까지 커넥션을 사용하므로 트랜잭션 안에서 사용하고, 다 쓰면 반드시 close 해야 한다.
+     * > 참고: MySQL 등 일부 드라이버는 fetch size 외에 별도 설정이 있어야 실제로 나눠서 가져온다.
+     */
+    public Stream<MemberTeamDto> searchStream(MemberSearchCondition condition) {
         return queryFactory
                 .select(new QMemberTeamDto(
                         member.id,
@@ -132,10 +217,13 @@ public class MemberJpaRepository {
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
                 )
-                .fetch();
+                .setHint(QueryHints.HINT_FETCH_SIZE, streamFetchSize)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .stream();
     }
 
     //where 파라미터 방식은 이런식으로 재사용이 가능하다.
+    //조회 전용 엔티티: 쓰기 트랜잭션 안에서 호출해도 스냅샷을 만들지 않으므로, 수정해도 반영되지 않는다.
     public List<Member> findMember(MemberSearchCondition condition) {
         return queryFactory
                 .selectFrom(member)
@@ -144,6 +232,7 @@ public class MemberJpaRepository {
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe()))
+                .setHint(QueryHints.HINT_READONLY, true)
                 .fetch();
     }
 
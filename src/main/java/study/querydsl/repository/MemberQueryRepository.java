@@ -3,9 +3,12 @@ package study.querydsl.repository;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.repository.support.InstrumentedJPAQueryFactory;
+import study.querydsl.repository.support.QueryInstrumentation;
 
 import javax.persistence.EntityManager;
 import java.util.List;
@@ -22,15 +25,26 @@ import static study.querydsl.entity.QTeam.team;
  * 또한, 커스텀에 억압되어서 모든 기능을 커스텀에 속해서 구현하는 것도 좋은 설계는 아님.
  */
 @Repository
+@Transactional(readOnly = true)
 public class MemberQueryRepository {
 
     private final JPAQueryFactory queryFactory;
+    private final MemberSearchResultCache resultCache;
 
-    public MemberQueryRepository(EntityManager em) {
-        this.queryFactory = new JPAQueryFactory(em);
+    public MemberQueryRepository(EntityManager em, MemberSearchResultCache resultCache, QueryInstrumentation instrumentation) {
+        this.queryFactory = new InstrumentedJPAQueryFactory(em, instrumentation);
+        this.resultCache = resultCache;
     }
 
+    /**
+     * 같은 조건이 반복되는 조회 화면용이므로 결과를 캐시한다. (MemberSearchResultCache)
+     * > 주의: 반환된 목록과 DTO 는 수정하지 말 것
+     */
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        return resultCache.get(condition, () -> searchFromDb(condition));
+    }
+
+    private List<MemberTeamDto> searchFromDb(MemberSearchCondition condition) {
         return queryFactory
                 .select(new QMemberTeamDto(
                         member.id,
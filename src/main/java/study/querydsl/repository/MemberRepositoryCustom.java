@@ -2,13 +2,20 @@ package study.querydsl.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 
 import java.util.List;
+import java.util.Map;
 
 public interface MemberRepositoryCustom {
     List<MemberTeamDto> search(MemberSearchCondition condition);
     Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
     Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
+    Page<MemberTeamDto> searchPageApproximate(MemberSearchCondition condition, Pageable pageable);
+    Page<MemberTeamDto> searchPageDeferredJoin(MemberSearchCondition condition, Pageable pageable);
+    Slice<MemberTeamDto> searchSlice(MemberSearchCondition condition, Long cursor, int size);
+    List<Long> bulkAddAge(MemberSearchCondition condition, int amount);
+    long bulkUpdateAges(Map<Long, Integer> agesById);
 }
@@ -6,31 +6,67 @@ import com.querydsl.core.types.dsl.Wildcard;
 import com.querydsl.jpa.JPQLQuery;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.jpa.repository.support.QuerydslRepositorySupport;
 import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.repository.support.BulkUpdateExecutor;
+import study.querydsl.repository.support.ConcurrentCountExecutor;
+import study.querydsl.repository.support.CountQueryJoinPruner;
+import study.querydsl.repository.support.EstimatedPage;
+import study.querydsl.repository.support.InstrumentedJPAQueryFactory;
+import study.querydsl.repository.support.QueryInstrumentation;
 
 import javax.persistence.Entity;
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.stream.Collectors;
 
 import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 
 //public class MemberRepositoryImpl extends QuerydslRepositorySupport implements MemberRepositoryCustom {
+/**
+ * 검색은 DTO 조회이고 읽기 전용 트랜잭션으로 실행한다. (조회 전 플러시 없음, 벌크 수정만 쓰기 트랜잭션)
+ */
+@Transactional(readOnly = true)
 public class MemberRepositoryImpl  implements MemberRepositoryCustom {
 
+    private final EntityManager em;
     private final JPAQueryFactory queryFactory;
-
-    public MemberRepositoryImpl(EntityManager em) {
-        this.queryFactory = new JPAQueryFactory(em);
+    private final MemberCountCache countCache;
+    private final ConcurrentCountExecutor countExecutor;
+    private final BulkUpdateExecutor bulkUpdateExecutor;
+    private final TeamCache teamCache;
+    private final QueryInstrumentation instrumentation;
+    private final long approximateCountLimit;
+
+    public MemberRepositoryImpl(EntityManager em, MemberCountCache countCache, ConcurrentCountExecutor countExecutor,
+                                BulkUpdateExecutor bulkUpdateExecutor, TeamCache teamCache, QueryInstrumentation instrumentation,
+                                @Value("${member.count.approximate-limit:1000}") long approximateCountLimit) {
+        this.em = em;
+        this.queryFactory = new InstrumentedJPAQueryFactory(em, instrumentation);
+        this.instrumentation = instrumentation;
+        this.countCache = countCache;
+        this.countExecutor = countExecutor;
+        this.bulkUpdateExecutor = bulkUpdateExecutor;
+        this.teamCache = teamCache;
+        this.approximateCountLimit = approximateCountLimit;
     }
 
 //    public MemberRepositoryImpl(EntityManager em) {
@@ -100,8 +136,13 @@ public class MemberRepositoryImpl  implements MemberRepositoryCustom {
         return hasText(username) ? member.username.eq(username) : null;
     }
 
+    /**
+     * 팀 이름을 팀 id 로 바꿔서(TeamCache) 'member.team.id in (...)' 로 검색한다.
+     * member 테이블의 team_id 로 바로 거르므로, 팀 이름만 쓰는 조건 때문에 team 을 조인할 필요가 없다.
+     * (카운트 쿼리에서는 CountQueryJoinPruner 가 team 조인을 제거한다)
+     */
     private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) : null;
+        return hasText(teamName) ? member.team.id.in(teamCache.findIdsByName(teamName)) : null;
     }
 
     private BooleanExpression ageGoe(Integer ageGoe) {
@@ -116,10 +157,12 @@ public class MemberRepositoryImpl  implements MemberRepositoryCustom {
 
     /**
      * 단순한 페이징, fetchResults() 사용
+     * 캐시된 전체 카운트(MemberCountCache)가 있으면 카운트 쿼리 없이 내용만 조회한다.
+     * 쓰기 트랜잭션에서는 카운트 캐시를 쓰지 않으므로, 컨텐츠 쿼리 전 자동 플러시로 늘어난 로우가 카운트에서 빠지지 않는다.
      */
     @Override
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
-        QueryResults<MemberTeamDto> result = queryFactory
+        JPAQuery<MemberTeamDto> query = queryFactory
                 .select(new QMemberTeamDto(
                         member.id,
                         member.username,
@@ -136,11 +179,19 @@ public class MemberRepositoryImpl  implements MemberRepositoryCustom {
                         ageLoe(condition.getAgeLoe())
                 )
                 .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetchResults();
+                .limit(pageable.getPageSize());
+
+        long countGeneration = countCache.generation();
+        OptionalLong cachedTotal = countCache.getIfPresent(condition);
+        if (cachedTotal.isPresent()) {
+            return new PageImpl<>(query.fetch(), pageable, cachedTotal.getAsLong());
+        }
+
+        QueryResults<MemberTeamDto> result = query.fetchResults();
 
         List<MemberTeamDto> content = result.getResults();
         long total = result.getTotal();
+        countCache.put(condition, countGeneration, total);
 
         return new PageImpl<>(content, pageable, total);
 
@@ -215,16 +266,23 @@ public class MemberRepositoryImpl  implements MemberRepositoryCustom {
     @Override
     public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
 
+        /**
+         * 캐시된 카운트가 없으면 카운트 쿼리를 먼저 비동기로 시작해두고 컨텐츠 쿼리를 실행한다.
+         * (member.concurrent-count.enabled=true 일 때만, 아니면 기존처럼 필요할 때 순서대로 실행)
+         * 캐시는 컨텐츠 쿼리 이후에 다시 확인한다. 컨텐츠 쿼리 전 플러시로 캐시가 무효화될 수 있기 때문이다.
+         */
+        //카운트 쿼리를 먼저 시작하므로 캐시 무효화 세대도 그 전에 읽어둔다.
+        long countGeneration = countCache.generation();
+        ConcurrentCountExecutor.PendingCount total = countCache.getIfPresent(condition).isPresent()
+                ? () -> countQuery(condition).fetchOne()
+                : countExecutor.count(countEm -> countQuery(countEm, condition));
+
+        /**
+         * team 조인 없이 member.team.id(외래 키)만 조회하고, 팀 이름은 TeamCache 에서 채운다.
+         */
         List<MemberTeamDto> content = queryFactory
-                .select(new QMemberTeamDto(
-                        member.id,
-                        member.username,
-                        member.age,
-                        team.id,
-                        team.name
-                ))
+                .select(member.id, member.username, member.age, member.team.id)
                 .from(member)
-                .leftJoin(member.team, team)
                 .where(
                         usernameEq(condition.getUsername()),
                         teamNameEq(condition.getTeamName()),
@@ -233,7 +291,16 @@ public class MemberRepositoryImpl  implements MemberRepositoryCustom {
                 )
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
-                .fetch();
+                .fetch()
+                .stream()
+                .map(tuple -> new MemberTeamDto(
+                        tuple.get(member.id),
+                        tuple.get(member.username),
+                        tuple.get(member.age),
+                        tuple.get(member.team.id),
+                        teamCache.findNameById(tuple.get(member.team.id))
+                ))
+                .collect(Collectors.toList());
 
         /**
          * 직접 토탈 카운트 쿼리를 날림
@@ -270,7 +337,125 @@ public class MemberRepositoryImpl  implements MemberRepositoryCustom {
          *   페이지 시작이면서 컨텐츠 사이즈가 페이지 사이즈보다 작을 때
          *   마지막 페이지 일 때 (offset + 컨텐츠 사이즈를 더해서 전체 사이즈 구함)
          */
-        JPAQuery<Long> countQuery = queryFactory
+//        JPAQuery<Long> countQuery = countQuery(condition);
+//        return PageableExecutionUtils.getPage(content, pageable, ()-> countQuery.fetchOne());
+//        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchOne);
+        try {
+            return PageableExecutionUtils.getPage(content, pageable, () -> countCache.get(condition, countGeneration, total));
+        } finally {
+            //getPage 가 카운트를 생략했거나(덜 찬 첫 페이지, 마지막 페이지) 캐시에 있었으면 시작해둔 카운트 쿼리는 취소
+            total.close();
+        }
+    }
+
+    /**
+     * 추정 카운트 페이징
+     * "약 N건" 정도만 보여주는 화면은 정확한 전체 카운트가 필요 없다.
+     * 1. 캐시된 카운트가 있으면 그대로 사용
+     * 2. 없으면 approximateCountLimit 번째 로우가 있는지만 확인해서(최대 limit 건만 읽음)
+     *    - 있으면 전체 카운트를 limit 으로 두고 totalEstimated = true ("limit 건 이상")
+     *    - 없으면 결과가 limit 건 이하이므로 카운트 쿼리도 싸다. 정확히 세서 캐시
+     */
+    @Override
+    public Page<MemberTeamDto> searchPageApproximate(MemberSearchCondition condition, Pageable pageable) {
+        List<MemberTeamDto> content = queryFactory
+                .select(new QMemberTeamDto(
+                        member.id,
+                        member.username,
+                        member.age,
+                        team.id,
+                        team.name
+                ))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                )
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+
+        OptionalLong cachedTotal = countCache.getIfPresent(condition);
+        if (cachedTotal.isPresent()) {
+            return new EstimatedPage<>(content, pageable, cachedTotal.getAsLong(), false);
+        }
+
+        long limit = Math.max(approximateCountLimit, pageable.getOffset() + pageable.getPageSize());
+        //팀 이름 조건도 member.team.id 로 거르므로 team 을 조인하지 않는다.
+        Long overLimit = queryFactory
+                .select(member.id)
+                .from(member)
+                .where(
+                        usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                )
+                .offset(limit)
+                .fetchFirst();
+
+        if (overLimit != null) {
+            return new EstimatedPage<>(content, pageable, limit, true);
+        }
+        return new EstimatedPage<>(content, pageable, countCache.get(condition, countQuery(condition)::fetchOne), false);
+    }
+
+    /**
+     * 지연 조인(deferred join) 페이징
+     * offset 이 큰 페이지에서는 건너뛰는 로우마다 team 조인과 DTO 컬럼을 모두 읽게 된다.
+     * 1. 먼저 member 에서 id 만 조회해서 해당 페이지의 id 를 구하고 (조인 없이 PK 인덱스만으로 처리 가능한 가벼운 쿼리)
+     * 2. 그 id 들로 team 을 조인해서 실제 컨텐츠를 채운다. (페이지 크기만큼만 조인)
+     *
+     * 결과는 member.id 순으로 정렬된다. 카운트 쿼리는 searchPageComplex 와 같다.
+     */
+    @Override
+    public Page<MemberTeamDto> searchPageDeferredJoin(MemberSearchCondition condition, Pageable pageable) {
+        //팀 이름 조건도 member.team.id 로 거르므로 team 을 조인하지 않는다. (member 만 읽는 가벼운 쿼리)
+        List<Long> ids = queryFactory
+                .select(member.id)
+                .from(member)
+                .where(
+                        usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                )
+                .orderBy(member.id.asc())
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+
+        List<MemberTeamDto> content = ids.isEmpty() ? Collections.emptyList() : queryFactory
+                .select(new QMemberTeamDto(
+                        member.id,
+                        member.username,
+                        member.age,
+                        team.id,
+                        team.name
+                ))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(member.id.in(ids))
+                .orderBy(member.id.asc())
+                .fetch();
+
+        JPAQuery<Long> countQuery = countQuery(condition);
+
+        return PageableExecutionUtils.getPage(content, pageable, () -> countCache.get(condition, countQuery::fetchOne));
+    }
+
+    /**
+     * 카운트 쿼리에서 사용하지 않는 조인은 CountQueryJoinPruner 가 제거한다. (teamName 조건이 없으면 team 조인 생략)
+     */
+    private JPAQuery<Long> countQuery(MemberSearchCondition condition) {
+        return countQuery(em, condition);
+    }
+
+    private JPAQuery<Long> countQuery(EntityManager em, MemberSearchCondition condition) {
+        return CountQueryJoinPruner.prune(em, new InstrumentedJPAQueryFactory(em, instrumentation)
                 .select(member.count())
                 .from(member)
                 .leftJoin(member.team, team)
@@ -279,12 +464,85 @@ public class MemberRepositoryImpl  implements MemberRepositoryCustom {
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
-                );
+                ));
+    }
 
-//        return PageableExecutionUtils.getPage(content, pageable, ()-> countQuery.fetchOne());
-        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchOne);
+
+    /**
+     * 커서 기반 페이징 (No Offset, keyset 페이징)
+     * offset 페이징은 건너뛰는 로우를 DB가 모두 읽고 버리기 때문에 뒤 페이지로 갈수록 느려진다.
+     * 이전 페이지의 마지막 member.id 를 커서로 받아서 'member.id > cursor' 로 바로 찾아가면
+     * 몇 번째 페이지든 첫 페이지와 비용이 같다. (PK 인덱스를 타고 size + 1 건만 읽음)
+     *
+     * 다음 페이지 여부는 size + 1 건을 조회해서 판단하므로 카운트 쿼리가 없다.
+     * 첫 페이지는 cursor 를 null 로 넘기면 된다.
+     */
+    @Override
+    public Slice<MemberTeamDto> searchSlice(MemberSearchCondition condition, Long cursor, int size) {
+        List<MemberTeamDto> content = queryFactory
+                .select(new QMemberTeamDto(
+                        member.id,
+                        member.username,
+                        member.age,
+                        team.id,
+                        team.name
+                ))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        memberIdGt(cursor),
+                        usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                )
+                .orderBy(member.id.asc())
+                .limit(size + 1)
+                .fetch();
+
+        boolean hasNext = content.size() > size;
+        if (hasNext) {
+            content = new ArrayList<>(content.subList(0, size));
+        }
+        return new SliceImpl<>(content, PageRequest.ofSize(size), hasNext);
+    }
+
+    private BooleanExpression memberIdGt(Long cursor) {
+        return cursor != null ? member.id.gt(cursor) : null;
     }
 
+    /**
+     * 검색 조건에 맞는 회원의 나이를 한 번에 더한다. (벌크 수정)
+     * 영속성 컨텍스트 전체를 비우지 않고, 수정된 회원만 준영속 상태가 된다. (BulkUpdateExecutor)
+     * @return 수정된 회원 id
+     */
+    @Override
+    @Transactional
+    public List<Long> bulkAddAge(MemberSearchCondition condition, int amount) {
+        //팀 이름 조건도 member.team.id 로 거르므로 team 을 조인하지 않는다. (for update 로 team 로우까지 잠그지 않도록)
+        JPAQuery<Long> idQuery = queryFactory
+                .select(member.id)
+                .from(member)
+                .where(
+                        usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                );
+        return bulkUpdateExecutor.update(idQuery, member, member.id,
+                clause -> clause.set(member.age, member.age.add(amount)));
+    }
+
+    /**
+     * 회원마다 다른 나이로 한 번에 수정한다. (case 문 벌크 수정, BulkUpdateExecutor.updateValues)
+     * @param agesById 회원 id -> 나이
+     * @return 수정된 회원 수
+     */
+    @Override
+    @Transactional
+    public long bulkUpdateAges(Map<Long, Integer> agesById) {
+        return bulkUpdateExecutor.updateValues(member, member.id, member.age, agesById);
+    }
 
     /**
      * 스프링 데이터 정렬(Sort)
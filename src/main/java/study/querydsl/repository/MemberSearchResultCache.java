@@ -0,0 +1,129 @@
+package study.querydsl.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.EntityChangedEvent;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 회원 검색 결과 캐시 (MemberQueryRepository.search)
+ * 정규화한 검색 조건을 키로 결과 목록을 캐시한다.
+ *
+ * 크기 제한
+ * - 전체: 결과 목록의 추정 메모리 크기 합이 max-weight 를 넘으면 오래 안 쓴 것부터 제거 (Caffeine weigher)
+ * - 항목: 결과가 max-rows 건을 넘으면 캐시하지 않는다. (큰 결과 하나가 캐시를 다 밀어내지 않도록)
+ *
+ * Member, Team 이 변경되면(EntityChangedEvent) 전부 무효화한다.
+ * 엔티티 변경은 EntityChangeEventPublisher, 벌크 연산은 BulkStatementEventPublisher 가 발행한다.
+ * 쓰기 트랜잭션에서는 캐시를 읽지도 쓰지도 않는다. (CommittedReads, 커밋 전 결과가 다른 트랜잭션에 보이지 않도록)
+ * 검색하는 사이에 무효화되었으면 그 결과는 캐시에 넣지 않는다. (MemberCountCache 와 같은 무효화 세대 확인)
+ *
+ * 메트릭
+ * - cache.gets{cache=member.search, result=hit|miss}, cache.evictions, cache.size (CaffeineCacheMetrics)
+ * - member.search.cache.weight : 캐시된 결과의 추정 메모리 크기 (bytes)
+ *
+ * > 주의: 반환하는 목록은 수정할 수 없고, 같은 DTO 인스턴스를 여러 호출이 공유하므로 DTO 도 수정하면 안 된다.
+ */
+@Component
+public class MemberSearchResultCache {
+
+    /**
+     * 캐시 항목 하나의 고정 비용 (키, 목록, 캐시 노드)
+     */
+    private static final long ENTRY_BYTES = 200;
+
+    /**
+     * MemberTeamDto 한 건의 고정 비용 (DTO, Long 2개, String 2개 헤더, 목록 참조), 문자열 길이는 따로 더한다.
+     */
+    private static final long ROW_BYTES = 160;
+
+    private final Cache<MemberSearchCondition, List<MemberTeamDto>> cache;
+    private final AtomicLong generation = new AtomicLong();
+    private final boolean enabled;
+    private final int maxRows;
+
+    public MemberSearchResultCache(MeterRegistry meterRegistry,
+                                   @Value("${member.search-cache.enabled:true}") boolean enabled,
+                                   @Value("${member.search-cache.ttl:1m}") Duration ttl,
+                                   @Value("${member.search-cache.max-weight:64MB}") DataSize maxWeight,
+                                   @Value("${member.search-cache.max-rows:10000}") int maxRows) {
+        this.enabled = enabled;
+        this.maxRows = maxRows;
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumWeight(maxWeight.toBytes())
+                .weigher((MemberSearchCondition condition, List<MemberTeamDto> result) -> weigh(result))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "member.search");
+        Gauge.builder("member.search.cache.weight", cache,
+                        c -> c.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L))
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public List<MemberTeamDto> get(MemberSearchCondition condition, Supplier<List<MemberTeamDto>> search) {
+        if (!enabled || !CommittedReads.isCommittedRead()) {
+            return search.get();
+        }
+        MemberSearchCondition key = condition.normalize();
+        List<MemberTeamDto> cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        long searchGeneration = generation.get();
+        List<MemberTeamDto> result = Collections.unmodifiableList(search.get());
+        if (result.size() <= maxRows && generation.get() == searchGeneration) {
+            cache.put(key, result);
+            //확인하고 넣는 사이에 invalidateAll 이 지나갔으면 방금 넣은 결과를 지운다.
+            if (generation.get() != searchGeneration) {
+                cache.asMap().remove(key, result);
+            }
+        }
+        return result;
+    }
+
+    public void invalidateAll() {
+        //세대를 먼저 올려야 검색 중이던 get 이 변경 전 결과를 넣지 않는다.
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (event.isAnyOf(Member.class, Team.class)) {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * 추정 메모리 크기 (문자열은 Latin-1 기준 1글자 1바이트)
+     */
+    private static int weigh(List<MemberTeamDto> result) {
+        long bytes = ENTRY_BYTES;
+        for (MemberTeamDto dto : result) {
+            bytes += ROW_BYTES + length(dto.getUsername()) + length(dto.getTeamName());
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+}
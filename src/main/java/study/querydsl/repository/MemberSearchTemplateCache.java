@@ -0,0 +1,153 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Param;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAProvider;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.repository.support.QueryDeadline;
+import study.querydsl.repository.support.QueryInstrumentation;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static study.querydsl.dto.MemberSearchCondition.*;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 검색 조건 모양(shape)별 JPQL 템플릿 캐시
+ * 동적 쿼리는 호출할 때마다 Querydsl 표현식 트리를 만들고 JPQL 문자열로 직렬화한다.
+ * 하지만 검색 조건은 4개라서 쿼리 모양은 16가지 뿐이므로, 모양별로 파라미터(Param)를 넣어서 한 번만 JPQL 로 만들어 두고
+ * 호출할 때는 파라미터만 바인딩한다.
+ * 같은 JPQL 문자열을 쓰므로 하이버네이트도 파싱 결과(쿼리 플랜 캐시)를 재사용한다.
+ *
+ * 히트/미스는 member.search.template 메트릭(result=hit|miss)으로 확인할 수 있다.
+ * Querydsl 쿼리를 거치지 않으므로 실행 시간 기록(QueryInstrumentation)과 마감 시간(QueryDeadline)은 직접 적용한다.
+ */
+@Component
+public class MemberSearchTemplateCache {
+
+    private static final Param<String> USERNAME_PARAM = new Param<>(String.class, "username");
+    private static final Param<String> TEAM_NAME_PARAM = new Param<>(String.class, "teamName");
+    private static final Param<Integer> AGE_GOE_PARAM = new Param<>(Integer.class, "ageGoe");
+    private static final Param<Integer> AGE_LOE_PARAM = new Param<>(Integer.class, "ageLoe");
+
+    private final EntityManager em;
+    private final AtomicReferenceArray<Template> templates = new AtomicReferenceArray<>(SHAPE_COUNT);
+    private final Counter hits;
+    private final Counter misses;
+    private final QueryInstrumentation instrumentation;
+
+    public MemberSearchTemplateCache(EntityManager em, MeterRegistry meterRegistry, QueryInstrumentation instrumentation) {
+        this.em = em;
+        this.instrumentation = instrumentation;
+        this.hits = Counter.builder("member.search.template").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("member.search.template").tag("result", "miss").register(meterRegistry);
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        long start = System.nanoTime();
+        Template template = template(condition.shape());
+
+        Query query = em.createQuery(template.jpql);
+        JPAUtil.setConstants(query, template.constants, params(condition));
+        QueryDeadline.apply(query);
+        long prepared = System.nanoTime();
+
+        List<?> rows = QueryDeadline.guard(em, query::getResultList);
+        long fetched = System.nanoTime();
+        List<MemberTeamDto> result = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            result.add(template.projection.newInstance((Object[]) row));
+        }
+        long mapped = System.nanoTime();
+
+        instrumentation.record("list", result.size(), prepared - start, mapped - prepared, mapped - fetched);
+        return result;
+    }
+
+    private Template template(int shape) {
+        Template template = templates.get(shape);
+        if (template != null) {
+            hits.increment();
+            return template;
+        }
+        misses.increment();
+        templates.compareAndSet(shape, null, render(shape));
+        return templates.get(shape);
+    }
+
+    /**
+     * 조건 모양에 해당하는 where 절만 넣어서 JPQL 로 직렬화한다. (값 대신 Param)
+     */
+    private Template render(int shape) {
+        QMemberTeamDto projection = new QMemberTeamDto(
+                member.id,
+                member.username,
+                member.age,
+                team.id,
+                team.name
+        );
+        JPAQuery<MemberTeamDto> query = new JPAQueryFactory(em)
+                .select(projection)
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        has(shape, USERNAME) ? member.username.eq(USERNAME_PARAM) : null,
+                        has(shape, TEAM_NAME) ? team.name.eq(TEAM_NAME_PARAM) : null,
+                        has(shape, AGE_GOE) ? member.age.goe(AGE_GOE_PARAM) : null,
+                        has(shape, AGE_LOE) ? member.age.loe(AGE_LOE_PARAM) : null
+                );
+
+        JPQLSerializer serializer = new JPQLSerializer(JPAProvider.getTemplates(em), em);
+        serializer.serialize(query.getMetadata(), false, null);
+        return new Template(serializer.toString(), new ArrayList<>(serializer.getConstants()), projection);
+    }
+
+    private static boolean has(int shape, int bit) {
+        return (shape & bit) != 0;
+    }
+
+    private static Map<ParamExpression<?>, Object> params(MemberSearchCondition condition) {
+        Map<ParamExpression<?>, Object> params = new HashMap<>();
+        int shape = condition.shape();
+        if (has(shape, USERNAME)) {
+            params.put(USERNAME_PARAM, condition.getUsername());
+        }
+        if (has(shape, TEAM_NAME)) {
+            params.put(TEAM_NAME_PARAM, condition.getTeamName());
+        }
+        if (has(shape, AGE_GOE)) {
+            params.put(AGE_GOE_PARAM, condition.getAgeGoe());
+        }
+        if (has(shape, AGE_LOE)) {
+            params.put(AGE_LOE_PARAM, condition.getAgeLoe());
+        }
+        return params;
+    }
+
+    private static final class Template {
+        private final String jpql;
+        private final List<Object> constants;
+        private final FactoryExpression<MemberTeamDto> projection;
+
+        private Template(String jpql, List<Object> constants, FactoryExpression<MemberTeamDto> projection) {
+            this.jpql = jpql;
+            this.constants = constants;
+            this.projection = projection;
+        }
+    }
+}
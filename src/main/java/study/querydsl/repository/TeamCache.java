@@ -0,0 +1,101 @@
+package study.querydsl.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.EntityChangedEvent;
+import study.querydsl.repository.support.InstrumentedJPAQueryFactory;
+import study.querydsl.repository.support.QueryInstrumentation;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 팀 이름 -> id, id -> 이름 캐시
+ * 팀 이름 조건을 'member.team.id in (...)' 로 바꾸면 team 조인 없이 member 테이블만으로 검색할 수 있다.
+ * 팀 이름은 유일하지 않으므로 이름마다 id 목록을 캐시한다.
+ * id -> 이름은 em.find() 로 읽으므로 2차 캐시(Team @Cache)를 거친다.
+ *
+ * Team 이 변경되면(EntityChangedEvent) 전부 무효화한다.
+ * 쓰기 트랜잭션에서는 캐시를 읽지도 쓰지도 않고 조회한다. (CommittedReads, 커밋 전 팀이 다른 트랜잭션에 보이지 않도록)
+ *
+ * 메트릭: cache.gets{cache=team.ids-by-name|team.name-by-id, result=hit|miss}
+ */
+@Component
+public class TeamCache {
+
+    private final EntityManager em;
+    private final QueryInstrumentation instrumentation;
+    private final Cache<String, List<Long>> idsByName;
+    private final Cache<Long, Optional<String>> nameById;
+
+    public TeamCache(EntityManager em, MeterRegistry meterRegistry, QueryInstrumentation instrumentation,
+                     @Value("${member.team-cache.ttl:10m}") Duration ttl,
+                     @Value("${member.team-cache.max-size:1000}") long maxSize) {
+        this.em = em;
+        this.instrumentation = instrumentation;
+        this.idsByName = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        this.nameById = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, idsByName, "team.ids-by-name");
+        CaffeineCacheMetrics.monitor(meterRegistry, nameById, "team.name-by-id");
+    }
+
+    public List<Long> findIdsByName(String name) {
+        if (!CommittedReads.isCommittedRead()) {
+            return loadIds(name);
+        }
+        return idsByName.get(name, this::loadIds);
+    }
+
+    public String findNameById(Long id) {
+        if (id == null) {
+            return null;
+        }
+        if (!CommittedReads.isCommittedRead()) {
+            return loadName(id).orElse(null);
+        }
+        return nameById.get(id, this::loadName).orElse(null);
+    }
+
+    public void invalidateAll() {
+        idsByName.invalidateAll();
+        nameById.invalidateAll();
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (event.isAnyOf(Team.class)) {
+            invalidateAll();
+        }
+    }
+
+    private List<Long> loadIds(String name) {
+        return new InstrumentedJPAQueryFactory(em, instrumentation)
+                .select(team.id)
+                .from(team)
+                .where(team.name.eq(name))
+                .orderBy(team.id.asc())
+                .fetch();
+    }
+
+    private Optional<String> loadName(Long id) {
+        return Optional.ofNullable(em.find(Team.class, id)).map(Team::getName);
+    }
+}
@@ -0,0 +1,21 @@
+package study.querydsl.repository;
+
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+import study.querydsl.entity.Team;
+
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+
+public interface TeamRepository extends JpaRepository<Team, Long> {
+
+    /**
+     * 팀과 회원 목록(Team.members)을 IN 쿼리 한 번으로 함께 조회한다. (left join fetch)
+     * 반환된 팀의 members 는 이미 초기화되어 있으므로 순회해도 추가 쿼리가 나가지 않는다.
+     */
+    @EntityGraph(attributePaths = "members")
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_PASS_DISTINCT_THROUGH, value = "false"))
+    List<Team> findDistinctByIdIn(Collection<Long> ids);
+}
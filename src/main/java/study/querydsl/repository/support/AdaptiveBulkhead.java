@@ -0,0 +1,181 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 동시 실행 수 제한 (bulkhead)
+ * 동시에 실행 중인 호출이 limit 개면 다음 호출은 큐에서 기다리고, 큐가 가득 차거나 maxWait 안에 자리가 나지 않으면 바로 거절한다.
+ * (BulkheadFullException)
+ *
+ * limit 은 측정한 응답 시간에 맞춰 바뀐다. (gradient 방식)
+ * - 평소 응답 시간(longRtt, 지수 이동 평균)보다 tolerance 배 이상 느려지면 비율만큼 줄인다. (DB 가 밀리고 있다는 신호)
+ * - 느려지지 않았으면 sqrt(limit) 만큼씩 늘린다. limit 의 절반도 쓰지 않는 동안은 늘리지 않는다.
+ * - 쿼리 타임아웃(dropped)이면 10% 줄인다.
+ * 변화는 smoothing 비율만큼만 반영하고 [minLimit, maxLimit] 범위를 벗어나지 않는다.
+ * 느린 응답이 계속되면 그것이 새 평소 응답 시간이 되어 다시 늘어나므로, maxLimit 이 최종 상한이다.
+ *
+ * 메트릭: {name}.limit, {name}.in-flight, {name}.queued (게이지), {name}.wait (큐 대기 시간),
+ * {name}.rejected{reason=queue-full|timeout}, 모두 생성할 때 받은 tags 를 붙인다.
+ */
+public class AdaptiveBulkhead {
+
+    private static final double SMOOTHING = 0.2;
+    private static final double TOLERANCE = 2.0;
+    private static final double LONG_WINDOW = 100;
+    private static final double DROP_DECREASE = 0.9;
+
+    private final String name;
+    private final Tags tags;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    //게이지는 락 없이 읽는다.
+    private volatile double limit;
+    private volatile double longRttNanos;
+    private volatile int inFlight;
+    private volatile int queued;
+
+    private final Timer waits;
+    private final Counter queueFull;
+    private final Counter waitTimeouts;
+
+    public AdaptiveBulkhead(String name, Tags tags, int initialLimit, int minLimit, int maxLimit, int maxQueue,
+                            MeterRegistry meterRegistry) {
+        this.name = name;
+        this.tags = tags;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueue = maxQueue;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+
+        Gauge.builder(name + ".limit", this, AdaptiveBulkhead::getLimit).tags(tags).register(meterRegistry);
+        Gauge.builder(name + ".in-flight", this, AdaptiveBulkhead::getInFlight).tags(tags).register(meterRegistry);
+        Gauge.builder(name + ".queued", this, AdaptiveBulkhead::getQueued).tags(tags).register(meterRegistry);
+        this.waits = Timer.builder(name + ".wait").tags(tags).register(meterRegistry);
+        this.queueFull = Counter.builder(name + ".rejected").tags(tags).tag("reason", "queue-full").register(meterRegistry);
+        this.waitTimeouts = Counter.builder(name + ".rejected").tags(tags).tag("reason", "timeout").register(meterRegistry);
+    }
+
+    /**
+     * 자리가 나면 call 을 실행한다. 실행 시간으로 limit 을 조정한다.
+     * @param maxWaitNanos 큐에서 기다리는 최대 시간 (0 이면 자리가 없을 때 바로 거절)
+     * @param isDropped 실행 중 던진 예외가 과부하로 인한 실패인지 (ex. 쿼리 타임아웃)
+     */
+    public <T> T execute(long maxWaitNanos, Predicate<RuntimeException> isDropped, Supplier<T> call) {
+        acquire(maxWaitNanos);
+        long start = System.nanoTime();
+        boolean dropped = false;
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            dropped = isDropped.test(e);
+            throw e;
+        } finally {
+            release(System.nanoTime() - start, dropped);
+        }
+    }
+
+    void acquire(long maxWaitNanos) {
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return;
+            }
+            if (queued >= maxQueue || maxWaitNanos <= 0) {
+                queueFull.increment();
+                throw new BulkheadFullException(name + tags + " is full (" + inFlight + " in flight, " + queued + " queued)");
+            }
+
+            queued++;
+            try {
+                long remaining = maxWaitNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        waitTimeouts.increment();
+                        throw new BulkheadFullException(name + tags + " wait timed out after "
+                                + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + "ms");
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+                inFlight++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BulkheadFullException(name + tags + " wait interrupted");
+            } finally {
+                queued--;
+                waits.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release(long rttNanos, boolean dropped) {
+        lock.lock();
+        try {
+            inFlight--;
+            limit = nextLimit(rttNanos, dropped);
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double nextLimit(long rttNanos, boolean dropped) {
+        if (dropped) {
+            return Math.max(minLimit, limit * DROP_DECREASE);
+        }
+        if (longRttNanos == 0) {
+            longRttNanos = rttNanos;
+        } else {
+            longRttNanos += (rttNanos - longRttNanos) / LONG_WINDOW;
+        }
+        //스파이크가 지나간 뒤 평소 응답 시간이 스파이크 쪽으로 끌려가 있으면 빠르게 되돌린다.
+        if (longRttNanos > rttNanos * TOLERANCE) {
+            longRttNanos *= 0.95;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRttNanos / Math.max(1, rttNanos)));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        //limit 의 절반도 쓰지 않는 동안은 늘릴 근거가 없다.
+        if (newLimit > limit && inFlight + 1 < limit / 2) {
+            return limit;
+        }
+        newLimit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        return Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    public double getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    /**
+     * 측정한 평소 응답 시간 (아직 측정 전이면 0)
+     */
+    public long getAverageRttNanos() {
+        return (long) longRttNanos;
+    }
+}
@@ -0,0 +1,109 @@
+package study.querydsl.repository.support;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * JPQL/Querydsl 벌크 연산(update, delete)도 EntityChangedEvent 로 발행한다.
+ *
+ * 벌크 연산은 영속성 컨텍스트를 거치지 않아서 EntityChangeEventPublisher(하이버네이트 이벤트)로는 알 수 없다.
+ * 하이버네이트가 실행하는 모든 SQL 을 StatementInspector 로 받아서, update/delete 문이면 테이블에 매핑된 엔티티로 이벤트를 발행한다.
+ * 실행 직전과 트랜잭션 종료 후에 한 번씩 발행한다. (EntityChangeEventPublisher 와 같은 이유)
+ *
+ * 엔티티 수정/삭제로 나가는 update/delete 문도 함께 발행되지만, 캐시 무효화는 여러 번 해도 결과가 같으므로 구분하지 않는다.
+ */
+@Component
+public class BulkStatementEventPublisher implements StatementInspector, HibernatePropertiesCustomizer {
+
+    /**
+     * 앞에 붙은 SQL 주석(use_sql_comments)을 건너뛰고 update 테이블 / delete from 테이블을 찾는다.
+     */
+    private static final Pattern DML = Pattern.compile(
+            "^\\s*(?:/\\*.*?\\*/\\s*)?(?:update|delete\\s+from)\\s+(\\w+)", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectProvider<EntityManagerFactory> emf;
+    private volatile Map<String, Class<?>> entityByTable;
+
+    public BulkStatementEventPublisher(ApplicationEventPublisher eventPublisher, ObjectProvider<EntityManagerFactory> emf) {
+        this.eventPublisher = eventPublisher;
+        this.emf = emf;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+    }
+
+    @Override
+    public String inspect(String sql) {
+        if (!mayBeDml(sql)) {
+            return sql;
+        }
+        Matcher matcher = DML.matcher(sql);
+        if (matcher.find()) {
+            Class<?> entityType = entityByTable().get(matcher.group(1).toLowerCase(Locale.ROOT));
+            if (entityType != null) {
+                publish(entityType);
+            }
+        }
+        return sql;
+    }
+
+    private void publish(Class<?> entityType) {
+        eventPublisher.publishEvent(new EntityChangedEvent(entityType));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    eventPublisher.publishEvent(new EntityChangedEvent(entityType));
+                }
+            });
+        }
+    }
+
+    /**
+     * select 문은 정규식 없이 빠르게 거른다.
+     */
+    private static boolean mayBeDml(String sql) {
+        for (int i = 0; i < sql.length(); i++) {
+            char c = Character.toLowerCase(sql.charAt(i));
+            if (!Character.isWhitespace(c)) {
+                return c == 'u' || c == 'd' || c == '/';
+            }
+        }
+        return false;
+    }
+
+    private Map<String, Class<?>> entityByTable() {
+        Map<String, Class<?>> result = entityByTable;
+        if (result == null) {
+            result = new HashMap<>();
+            SessionFactoryImplementor sessionFactory = emf.getObject().unwrap(SessionFactoryImplementor.class);
+            for (EntityPersister persister : sessionFactory.getMetamodel().entityPersisters().values()) {
+                if (persister instanceof AbstractEntityPersister) {
+                    String table = ((AbstractEntityPersister) persister).getTableName();
+                    result.put(table.toLowerCase(Locale.ROOT), persister.getMappedClass());
+                }
+            }
+            entityByTable = result;
+        }
+        return result;
+    }
+}
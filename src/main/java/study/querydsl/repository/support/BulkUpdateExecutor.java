@@ -0,0 +1,145 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.dsl.CaseForEqBuilder;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 영속성 컨텍스트를 비우지 않는 벌크 수정
+ *
+ * 벌크 연산은 영속성 컨텍스트를 거치지 않으므로, 보통은 실행 후 em.flush(), em.clear() 로 전부 비운다. (QuerydslMiddleTest.bulkUpdate)
+ * 여기서는 수정 대상 id 를 먼저 조회(select for update)하고, 그 id 로 update 한 다음,
+ * 영속성 컨텍스트에서는 수정된 엔티티만 준영속 상태로 만든다. 나머지 엔티티는 그대로 사용할 수 있다.
+ *
+ * 2차 캐시는 하이버네이트가 벌크 연산 후 해당 엔티티 영역과 쿼리 캐시를 무효화하므로 따로 처리하지 않는다.
+ * 벌크 연산은 하이버네이트 이벤트가 발생하지 않으므로 EntityChangedEvent 는 직접 발행한다. (카운트 캐시 등)
+ *
+ * > 주의: 트랜잭션 안에서 호출해야 한다. (수정 대상 로우에 락을 건다)
+ */
+@Component
+public class BulkUpdateExecutor {
+
+    private static final int IN_CHUNK_SIZE = 1000;
+
+    /**
+     * case 절은 로우마다 파라미터가 2개씩 들어가므로 더 작게 나눈다.
+     */
+    private static final int VALUES_CHUNK_SIZE = 500;
+
+    private final EntityManager em;
+    private final EntityChangeEventPublisher changeEventPublisher;
+
+    public BulkUpdateExecutor(EntityManager em, EntityChangeEventPublisher changeEventPublisher) {
+        this.em = em;
+        this.changeEventPublisher = changeEventPublisher;
+    }
+
+    /**
+     * @param idQuery     수정 대상 id 조회 쿼리 (where 조건 포함), select for update 로 실행하므로 outer join 은 넣지 않는다.
+     *                    (PostgreSQL 은 outer join 의 nullable 쪽에 for update 를 걸 수 없고, 다른 DB 는 조인한 로우까지 잠근다)
+     * @param entity      수정할 엔티티 (ex. member)
+     * @param id          엔티티의 id 경로 (ex. member.id)
+     * @param assignments set 절 (ex. clause -> clause.set(member.age, member.age.add(1)))
+     * @return 수정된 엔티티 id
+     */
+    public <T> List<Long> update(JPAQuery<Long> idQuery, EntityPath<T> entity, NumberPath<Long> id,
+                                 Consumer<JPAUpdateClause> assignments) {
+        //영속성 컨텍스트의 변경 내용을 먼저 반영해야 수정 대상 조회와 update 가 최신 데이터 기준으로 동작한다.
+        em.flush();
+
+        List<Long> ids = idQuery
+                .orderBy(id.asc())
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .fetch();
+        if (ids.isEmpty()) {
+            return ids;
+        }
+
+        JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+        for (int from = 0; from < ids.size(); from += IN_CHUNK_SIZE) {
+            JPAUpdateClause clause = queryFactory
+                    .update(entity)
+                    .where(id.in(ids.subList(from, Math.min(from + IN_CHUNK_SIZE, ids.size()))));
+            assignments.accept(clause);
+            clause.execute();
+        }
+
+        detach(entity.getType(), ids);
+        changeEventPublisher.publish(entity.getType());
+        return ids;
+    }
+
+    /**
+     * 로우마다 다른 값으로 수정 (엔티티를 조회하지 않고, 로우마다 update 하지도 않음)
+     * update member set age = case member_id when ? then ? ... else age end where member_id in (...)
+     * id 가 많으면 VALUES_CHUNK_SIZE 건씩 나눠서 실행한다. 수정된 엔티티는 update() 와 마찬가지로 준영속 상태가 된다.
+     *
+     * @param path        수정할 필드 (ex. member.age)
+     * @param valuesById  id -> 새 값 (null 이면 null 로 수정, 컬럼이 not null 이면 DB 가 거부한다)
+     * @return 수정된 로우 수 (DB 에 없는 id 는 빠진다)
+     */
+    public <V> long updateValues(EntityPath<?> entity, NumberPath<Long> id, Path<V> path, Map<Long, V> valuesById) {
+        if (valuesById.isEmpty()) {
+            return 0;
+        }
+        em.flush();
+
+        JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+        List<Long> ids = new ArrayList<>(valuesById.keySet());
+        long updated = 0;
+        for (int from = 0; from < ids.size(); from += VALUES_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + VALUES_CHUNK_SIZE, ids.size()));
+
+            CaseForEqBuilder<Long>.Cases<V, Expression<V>> cases = null;
+            for (Long chunkId : chunk) {
+                V chunkValue = valuesById.get(chunkId);
+                Expression<V> value = chunkValue != null
+                        ? Expressions.constant(chunkValue)
+                        : Expressions.nullExpression(path);
+                cases = cases == null ? id.when(chunkId).then(value) : cases.when(chunkId).then(value);
+            }
+            updated += queryFactory
+                    .update(entity)
+                    .set(path, cases.otherwise(path))
+                    .where(id.in(chunk))
+                    .execute();
+        }
+
+        detach(entity.getType(), ids);
+        changeEventPublisher.publish(entity.getType());
+        return updated;
+    }
+
+    /**
+     * 영속성 컨텍스트에 있는 엔티티만 준영속 상태로 만든다. (없는 엔티티를 조회하지 않음)
+     * 이후 조회하면 DB 에서 수정된 값을 다시 읽어온다.
+     */
+    private void detach(Class<?> entityType, List<Long> ids) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(entityType);
+        PersistenceContext persistenceContext = session.getPersistenceContextInternal();
+        for (Long id : ids) {
+            Object managed = persistenceContext.getEntity(session.generateEntityKey(id, persister));
+            if (managed != null) {
+                em.detach(managed);
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package study.querydsl.repository.support;
+
+/**
+ * AdaptiveBulkhead 에 자리가 없어서 실행하지 않았다. (큐가 가득 찼거나 대기 시간 초과)
+ */
+public class BulkheadFullException extends RuntimeException {
+
+    public BulkheadFullException(String message) {
+        super(message);
+    }
+}
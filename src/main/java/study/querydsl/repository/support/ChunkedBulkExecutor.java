@@ -0,0 +1,141 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 나눠서 실행하는 벌크 수정/삭제
+ *
+ * 벌크 연산을 한 번에 실행하면 큰 테이블에서는 락을 오래 잡고 undo 로그가 커져서 온라인 조회(/v1 ~ /v4/members)가 밀린다.
+ * 대상 로우를 PK 순서로 chunk-size 건씩 잘라서 'id between 처음 and 마지막' 범위로 실행하고, 범위마다 커밋한다.
+ * 초당 rows-per-second 건을 넘지 않도록 범위 사이에 쉬어간다. (0 이면 제한 없음)
+ *
+ * 진행 상황은 메트릭으로 확인한다. (job 태그로 구분)
+ * - bulk.chunked.rows : 처리한 로우 수
+ * - bulk.chunked.chunk : 범위 하나 처리 시간, 처리한 범위 수
+ *
+ * > 주의: 범위마다 새 트랜잭션(REQUIRES_NEW)으로 커밋하므로 중간에 실패하면 앞 범위는 이미 반영되어 있다. 다시 실행해도 되는 작업에 사용한다.
+ * > 주의: 조건(predicate)은 update, delete 절에 그대로 들어가므로 조인 없이 대상 엔티티 기준으로 작성한다. (필요하면 서브쿼리)
+ */
+@Slf4j
+@Component
+public class ChunkedBulkExecutor {
+
+    private final EntityManager em;
+    private final TransactionTemplate chunkTransaction;
+    private final EntityChangeEventPublisher changeEventPublisher;
+    private final MeterRegistry meterRegistry;
+    private final int chunkSize;
+    private final int rowsPerSecond;
+
+    public ChunkedBulkExecutor(EntityManager em, PlatformTransactionManager transactionManager,
+                               EntityChangeEventPublisher changeEventPublisher, MeterRegistry meterRegistry,
+                               @Value("${member.bulk.chunk-size:1000}") int chunkSize,
+                               @Value("${member.bulk.rows-per-second:0}") int rowsPerSecond) {
+        this.em = em;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.changeEventPublisher = changeEventPublisher;
+        this.meterRegistry = meterRegistry;
+        this.chunkSize = chunkSize;
+        this.rowsPerSecond = rowsPerSecond;
+    }
+
+    /**
+     * @return 삭제한 로우 수
+     */
+    public long delete(String job, EntityPath<?> entity, NumberPath<Long> id, Predicate predicate) {
+        return execute(job, "delete", entity, id, predicate,
+                range -> new JPAQueryFactory(em).delete(entity).where(predicate, range).execute());
+    }
+
+    /**
+     * @param assignments set 절 (ex. clause -> clause.set(member.age, member.age.add(1)))
+     * @return 수정한 로우 수
+     */
+    public long update(String job, EntityPath<?> entity, NumberPath<Long> id, Predicate predicate,
+                       Consumer<JPAUpdateClause> assignments) {
+        return execute(job, "update", entity, id, predicate, range -> {
+            JPAUpdateClause clause = new JPAQueryFactory(em).update(entity).where(predicate, range);
+            assignments.accept(clause);
+            return clause.execute();
+        });
+    }
+
+    private long execute(String job, String operation, EntityPath<?> entity, NumberPath<Long> id, Predicate predicate,
+                         Function<Predicate, Long> clause) {
+        Counter rows = Counter.builder("bulk.chunked.rows").tag("job", job).tag("operation", operation).register(meterRegistry);
+        Timer chunks = Timer.builder("bulk.chunked.chunk").tag("job", job).tag("operation", operation).register(meterRegistry);
+
+        long startNanos = System.nanoTime();
+        long total = 0;
+        Long lastId = null;
+        while (true) {
+            Long from = lastId;
+            long chunkStart = System.nanoTime();
+            long[] result = chunkTransaction.execute(status -> {
+                List<Long> ids = new JPAQueryFactory(em)
+                        .select(id)
+                        .from(entity)
+                        .where(predicate, from != null ? id.gt(from) : null)
+                        .orderBy(id.asc())
+                        .limit(chunkSize)
+                        .fetch();
+                if (ids.isEmpty()) {
+                    return null;
+                }
+                long rangeEnd = ids.get(ids.size() - 1);
+                return new long[]{rangeEnd, clause.apply(id.between(ids.get(0), rangeEnd))};
+            });
+            if (result == null) {
+                break;
+            }
+            chunks.record(System.nanoTime() - chunkStart, TimeUnit.NANOSECONDS);
+            lastId = result[0];
+            total += result[1];
+            rows.increment(result[1]);
+            changeEventPublisher.publish(entity.getType());
+            log.info("bulk {} job={} rows={} lastId={}", operation, job, total, lastId);
+
+            throttle(startNanos, total);
+        }
+        return total;
+    }
+
+    /**
+     * 지금까지 처리한 건수가 목표 속도로 걸렸어야 할 시간보다 빨리 끝났으면 그만큼 쉰다.
+     */
+    private void throttle(long startNanos, long total) {
+        if (rowsPerSecond <= 0) {
+            return;
+        }
+        long expectedNanos = TimeUnit.SECONDS.toNanos(total) / rowsPerSecond;
+        long aheadNanos = expectedNanos - (System.nanoTime() - startNanos);
+        if (aheadNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(aheadNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("bulk job interrupted", e);
+            }
+        }
+    }
+}
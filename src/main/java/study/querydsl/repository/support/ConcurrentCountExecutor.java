@@ -0,0 +1,161 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * 카운트 쿼리 동시 실행
+ * 컨텐츠 쿼리와 카운트 쿼리를 순서대로 실행하면 응답 시간은 두 쿼리의 합이 된다.
+ * 카운트 쿼리를 별도 스레드, 별도 EntityManager(별도 커넥션)에서 먼저 시작해두고 컨텐츠 쿼리를 실행하면 둘 중 긴 쪽의 시간만 걸린다.
+ *
+ * 다음 경우에는 호출한 스레드에서 순서대로 실행한다. (기존 방식)
+ * - member.concurrent-count.enabled=false (기본값)
+ * - 쓰기 트랜잭션 안에서 호출 (커밋 전 데이터는 다른 커넥션에서 보이지 않으므로)
+ * - 스레드 풀과 대기 큐가 가득 참
+ *
+ * timeout 안에 카운트가 끝나지 않으면 비동기 쿼리를 취소하고 QueryTimeoutException 을 던진다. (다시 실행하지 않음)
+ * 결과가 필요 없게 되면(getPage 가 카운트를 생략, 캐시 적중) PendingCount.close 로 취소한다.
+ *
+ * > 주의: 요청 하나가 커넥션을 2개 사용하므로 pool-size 는 커넥션 풀 크기보다 충분히 작게 잡는다.
+ */
+@Slf4j
+@Component
+public class ConcurrentCountExecutor implements DisposableBean {
+
+    private final EntityManagerFactory emf;
+    private final EntityManager em;
+    private final boolean enabled;
+    private final Duration timeout;
+    private final boolean replicaRouting;
+    private final ThreadPoolExecutor executor;
+
+    public ConcurrentCountExecutor(EntityManagerFactory emf, EntityManager em,
+                                   @Value("${member.concurrent-count.enabled:false}") boolean enabled,
+                                   @Value("${member.concurrent-count.pool-size:4}") int poolSize,
+                                   @Value("${member.concurrent-count.queue-size:16}") int queueSize,
+                                   @Value("${member.concurrent-count.timeout:3s}") Duration timeout,
+                                   @Value("${member.replica.enabled:false}") boolean replicaRouting) {
+        this.emf = emf;
+        this.em = em;
+        this.enabled = enabled;
+        this.timeout = timeout;
+        this.replicaRouting = replicaRouting;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "count-query-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 카운트 쿼리를 비동기로 시작하고, 결과를 기다리는 PendingCount 를 반환한다.
+     * PageableExecutionUtils.getPage() 의 totalSupplier 로 넘기고, 끝나면 close 한다. (쓰지 않은 카운트 쿼리 취소)
+     *
+     * @param countQuery 주어진 EntityManager 로 카운트 쿼리를 만드는 함수
+     */
+    public PendingCount count(Function<EntityManager, JPAQuery<Long>> countQuery) {
+        if (!enabled || inReadWriteTransaction()) {
+            return () -> countQuery.apply(em).fetchOne();
+        }
+
+        Future<Long> future;
+        try {
+            QueryContext context = QueryContext.current();
+            QueryDeadline deadline = QueryDeadline.current();
+            future = executor.submit(() -> QueryContext.open(context)
+                    .call(() -> QueryDeadline.open(deadline).call(() -> countOnSeparateEntityManager(countQuery))));
+        } catch (RejectedExecutionException e) {
+            log.debug("count query pool saturated, fallback to sequential");
+            return () -> countQuery.apply(em).fetchOne();
+        }
+
+        return new PendingCount() {
+            @Override
+            public long getAsLong() {
+                try {
+                    return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    future.cancel(true);
+                    throw new QueryTimeoutException("count query timed out after " + timeout, e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new IllegalStateException(e.getCause());
+                } catch (InterruptedException e) {
+                    future.cancel(true);
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public void close() {
+                future.cancel(true);
+            }
+        };
+    }
+
+    private boolean inReadWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    /**
+     * 읽기 전용 세션으로 카운트만 하고 바로 닫는다. timeout 이 지나면 DB 에서도 쿼리가 취소되도록 쿼리 타임아웃을 건다.
+     */
+    private Long countOnSeparateEntityManager(Function<EntityManager, JPAQuery<Long>> countQuery) {
+        EntityManager countEm = emf.createEntityManager();
+        //트랜잭션 없이 실행하므로 읽기 전용임을 직접 표시한다. (ReplicaRoutingDataSource 가 복제본으로 보냄)
+        if (replicaRouting) {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        }
+        try {
+            Session session = countEm.unwrap(Session.class);
+            session.setDefaultReadOnly(true);
+            session.setHibernateFlushMode(FlushMode.MANUAL);
+            return countQuery.apply(countEm)
+                    .setHint("javax.persistence.query.timeout", (int) timeout.toMillis())
+                    .fetchOne();
+        } finally {
+            countEm.close();
+            if (replicaRouting) {
+                TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+            }
+        }
+    }
+
+    /**
+     * 시작한 카운트 쿼리. 결과를 쓰지 않았으면 close 가 실행 중이거나 대기 중인 쿼리를 취소한다. (이미 끝났으면 아무것도 안 함)
+     */
+    public interface PendingCount extends LongSupplier, AutoCloseable {
+
+        @Override
+        default void close() {
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
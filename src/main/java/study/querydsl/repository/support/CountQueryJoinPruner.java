@@ -0,0 +1,206 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.JoinType;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.*;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import javax.persistence.EntityManager;
+import javax.persistence.ManyToOne;
+import javax.persistence.OneToOne;
+import java.lang.reflect.AnnotatedElement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 카운트 쿼리 조인 최적화
+ * to-one 연관관계(@ManyToOne, @OneToOne)를 left join 하면 조인 대상이 최대 1건이므로 로우 수가 변하지 않는다.
+ * 따라서 조인 별칭(ex. team)을 select, where, group by, having 어디에서도 쓰지 않는다면 카운트 쿼리에서 빼도 결과가 같다.
+ *
+ * where 파라미터 방식의 동적 쿼리는 조건이 null 이면 where 절에서 빠지므로, 조건 값에 따라 필요한 조인만 남게 된다.
+ * ex) teamName 조건이 없으면 leftJoin(member.team, team) 을 제거
+ *
+ * 반환되는 쿼리는 카운트 전용이다. (order by, offset, limit 은 복사하지 않음)
+ * 힌트, 락 모드, 플러시 모드는 QueryMetadata 가 아니라 쿼리 인스턴스에 있으므로 따로 복사한다.
+ * InstrumentedJPAQuery 를 넘기면 계측도 유지된다.
+ */
+public final class CountQueryJoinPruner {
+
+    private CountQueryJoinPruner() {
+    }
+
+    public static <T> JPAQuery<T> prune(EntityManager em, JPAQuery<T> query) {
+        QueryMetadata metadata = query.getMetadata();
+        List<JoinExpression> joins = new ArrayList<>(metadata.getJoins());
+
+        //뒤쪽 조인을 제거하면 앞쪽 조인이 더 이상 참조되지 않을 수 있으므로 제거할 조인이 없을 때까지 반복
+        boolean pruned = true;
+        while (pruned) {
+            pruned = false;
+            for (int i = joins.size() - 1; i > 0; i--) {
+                JoinExpression join = joins.get(i);
+                if (isPrunable(join) && !referencedRoots(metadata, joins, i).contains(alias(join))) {
+                    joins.remove(i);
+                    pruned = true;
+                }
+            }
+        }
+
+        if (joins.size() == metadata.getJoins().size()) {
+            return query;
+        }
+        if (query instanceof InstrumentedJPAQuery) {
+            return ((InstrumentedJPAQuery<T>) query).withMetadata(em, copyOf(metadata, joins));
+        }
+        return new PrunedJPAQuery<>(em, copyOf(metadata, joins), query);
+    }
+
+    /**
+     * on 절이 없는 left join 이면서, 별칭을 지정한 to-one 연관관계 조인만 제거 대상
+     */
+    private static boolean isPrunable(JoinExpression join) {
+        if (join.getType() != JoinType.LEFTJOIN || join.getCondition() != null) {
+            return false;
+        }
+        Expression<?> target = join.getTarget();
+        if (!(target instanceof Operation) || ((Operation<?>) target).getOperator() != Ops.ALIAS) {
+            return false;
+        }
+        Expression<?> association = ((Operation<?>) target).getArg(0);
+        if (!(association instanceof Path)) {
+            return false;
+        }
+        AnnotatedElement element = ((Path<?>) association).getAnnotatedElement();
+        return element.isAnnotationPresent(ManyToOne.class) || element.isAnnotationPresent(OneToOne.class);
+    }
+
+    private static Expression<?> alias(JoinExpression join) {
+        return ((Operation<?>) join.getTarget()).getArg(1);
+    }
+
+    /**
+     * excludeIndex 조인을 제외한 나머지 절에서 사용하는 루트 경로(별칭)들
+     * 카운트는 select 절이 생성자(FactoryExpression) 프로젝션이면 루트 엔티티로 세므로 select 절은 제외한다.
+     */
+    private static Set<Path<?>> referencedRoots(QueryMetadata metadata, List<JoinExpression> joins, int excludeIndex) {
+        Set<Path<?>> roots = new HashSet<>();
+        RootPathCollector collector = new RootPathCollector(roots);
+
+        if (!(metadata.getProjection() instanceof FactoryExpression)) {
+            collector.collect(metadata.getProjection());
+        }
+        collector.collect(metadata.getWhere());
+        metadata.getGroupBy().forEach(collector::collect);
+        collector.collect(metadata.getHaving());
+        for (int i = 0; i < joins.size(); i++) {
+            if (i != excludeIndex) {
+                collector.collect(joins.get(i).getTarget());
+                collector.collect(joins.get(i).getCondition());
+            }
+        }
+        return roots;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static QueryMetadata copyOf(QueryMetadata metadata, List<JoinExpression> joins) {
+        DefaultQueryMetadata copy = new DefaultQueryMetadata();
+        for (JoinExpression join : joins) {
+            copy.addJoin(join.getType(), join.getTarget());
+            if (join.getCondition() != null) {
+                copy.addJoinCondition(join.getCondition());
+            }
+            join.getFlags().forEach(copy::addJoinFlag);
+        }
+        copy.setProjection(metadata.getProjection());
+        copy.setDistinct(metadata.isDistinct());
+        copy.setUnique(metadata.isUnique());
+        copy.addWhere(metadata.getWhere());
+        metadata.getGroupBy().forEach(copy::addGroupBy);
+        copy.addHaving(metadata.getHaving());
+        metadata.getFlags().forEach(copy::addFlag);
+        metadata.getParams().forEach((param, value) -> copy.setParam((ParamExpression<Object>) param, value));
+        return copy;
+    }
+
+    /**
+     * 원래 쿼리의 힌트, 락 모드, 플러시 모드를 이어받는 JPAQuery (AbstractJPAQuery.clone 이 protected)
+     */
+    private static final class PrunedJPAQuery<T> extends JPAQuery<T> {
+
+        private PrunedJPAQuery(EntityManager em, QueryMetadata metadata, JPAQuery<T> source) {
+            super(em, metadata);
+            clone(source);
+        }
+    }
+
+    private static final class RootPathCollector implements Visitor<Void, Void> {
+
+        private final Set<Path<?>> roots;
+
+        private RootPathCollector(Set<Path<?>> roots) {
+            this.roots = roots;
+        }
+
+        void collect(Expression<?> expr) {
+            if (expr != null) {
+                expr.accept(this, null);
+            }
+        }
+
+        @Override
+        public Void visit(Constant<?> expr, Void context) {
+            return null;
+        }
+
+        @Override
+        public Void visit(FactoryExpression<?> expr, Void context) {
+            expr.getArgs().forEach(this::collect);
+            return null;
+        }
+
+        @Override
+        public Void visit(Operation<?> expr, Void context) {
+            expr.getArgs().forEach(this::collect);
+            return null;
+        }
+
+        @Override
+        public Void visit(ParamExpression<?> expr, Void context) {
+            return null;
+        }
+
+        @Override
+        public Void visit(Path<?> expr, Void context) {
+            roots.add(expr.getRoot());
+            return null;
+        }
+
+        @Override
+        public Void visit(SubQueryExpression<?> expr, Void context) {
+            QueryMetadata metadata = expr.getMetadata();
+            for (JoinExpression join : metadata.getJoins()) {
+                collect(join.getTarget());
+                collect(join.getCondition());
+            }
+            collect(metadata.getProjection());
+            collect(metadata.getWhere());
+            metadata.getGroupBy().forEach(this::collect);
+            collect(metadata.getHaving());
+            return null;
+        }
+
+        @Override
+        public Void visit(TemplateExpression<?> expr, Void context) {
+            for (Object arg : expr.getArgs()) {
+                if (arg instanceof Expression) {
+                    collect((Expression<?>) arg);
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package study.querydsl.repository.support;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * 하이버네이트 이벤트 리스너를 등록해서 엔티티 변경을 EntityChangedEvent 로 발행한다.
+ *
+ * 플러시 시점(POST_INSERT 등)과 트랜잭션 종료 시점(POST_COMMIT_INSERT 등) 모두 발행한다.
+ * - 플러시 시점: 같은 트랜잭션 안에서 이후에 조회하는 쿼리가 캐시된 값을 보지 않도록
+ * - 커밋/롤백 시점: 커밋 전에 다른 트랜잭션이 캐시에 넣은 값, 롤백된 데이터로 캐시된 값을 버리도록
+ *
+ * > 주의: JPQL/Querydsl 벌크 연산(update, delete)은 영속성 컨텍스트를 거치지 않으므로 이벤트가 발생하지 않는다.
+ */
+@Component
+public class EntityChangeEventPublisher implements PostCommitInsertEventListener,
+        PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private final EntityManagerFactory emf;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public EntityChangeEventPublisher(EntityManagerFactory emf, ApplicationEventPublisher eventPublisher) {
+        this.emf = emf;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    public void publish(Class<?> entityType) {
+        eventPublisher.publishEvent(new EntityChangedEvent(entityType));
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        publish(event.getPersister().getMappedClass());
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+        publish(event.getPersister().getMappedClass());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        publish(event.getPersister().getMappedClass());
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        publish(event.getPersister().getMappedClass());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        publish(event.getPersister().getMappedClass());
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        publish(event.getPersister().getMappedClass());
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return true;
+    }
+}
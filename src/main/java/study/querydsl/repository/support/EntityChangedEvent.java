@@ -0,0 +1,26 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 엔티티가 저장, 수정, 삭제 되었음을 알리는 스프링 이벤트
+ * 캐시들은 이 이벤트를 받아서 entityType 에 해당하는 값을 무효화한다.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class EntityChangedEvent {
+
+    private final Class<?> entityType;
+
+    public boolean isAnyOf(Class<?>... types) {
+        for (Class<?> type : types) {
+            if (type.isAssignableFrom(entityType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
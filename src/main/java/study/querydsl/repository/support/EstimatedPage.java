@@ -0,0 +1,25 @@
+package study.querydsl.repository.support;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+/**
+ * 전체 카운트가 추정값일 수 있는 페이지
+ * totalEstimated 가 true 이면 totalElements 는 "최소 이만큼 있다" 는 의미이다. (ex. 화면에 "약 1,000건 이상" 으로 표시)
+ * JSON 응답에 totalEstimated 필드가 추가된다.
+ */
+public class EstimatedPage<T> extends PageImpl<T> {
+
+    private final boolean totalEstimated;
+
+    public EstimatedPage(List<T> content, Pageable pageable, long total, boolean totalEstimated) {
+        super(content, pageable, total);
+        this.totalEstimated = totalEstimated;
+    }
+
+    public boolean isTotalEstimated() {
+        return totalEstimated;
+    }
+}
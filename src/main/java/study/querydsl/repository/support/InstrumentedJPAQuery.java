@@ -0,0 +1,185 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryModifiers;
+import com.querydsl.core.QueryResults;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Visitor;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAProvider;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.List;
+
+/**
+ * fetch, fetchOne, fetchCount, fetchResults 마다 시간을 재서 QueryInstrumentation 에 기록하는 JPAQuery
+ *
+ * - prepare : JPQL 렌더링 + JPA 쿼리 생성 (createQuery)
+ * - fetch : 쿼리 실행 + 결과 매핑
+ * - mapping : DTO 생성 (FactoryExpression.newInstance), JFR 녹화 중일 때만 측정
+ *
+ * stream, iterate 는 결과를 소비하는 쪽에서 시간이 결정되므로 기록하지 않는다.
+ *
+ * 요청의 쿼리 마감 시간(QueryDeadline)이 열려 있으면 남은 시간을 쿼리 타임아웃으로 걸고, 마감 시간에 취소한다.
+ */
+public class InstrumentedJPAQuery<T> extends JPAQuery<T> {
+
+    private final QueryInstrumentation instrumentation;
+    private long prepareNanos;
+
+    public InstrumentedJPAQuery(EntityManager em, QueryInstrumentation instrumentation) {
+        this(em, JPAProvider.getTemplates(em), new DefaultQueryMetadata(), instrumentation);
+    }
+
+    public InstrumentedJPAQuery(EntityManager em, JPQLTemplates templates, QueryMetadata metadata,
+                                QueryInstrumentation instrumentation) {
+        super(em, templates, metadata);
+        this.instrumentation = instrumentation;
+    }
+
+    /**
+     * 같은 계측 설정, 힌트, 락 모드, 플러시 모드로 메타데이터만 바꾼 쿼리 (CountQueryJoinPruner 에서 사용)
+     */
+    public InstrumentedJPAQuery<T> withMetadata(EntityManager em, QueryMetadata metadata) {
+        InstrumentedJPAQuery<T> q = new InstrumentedJPAQuery<>(em, getTemplates(), metadata, instrumentation);
+        q.clone(this);
+        return q;
+    }
+
+    @Override
+    public List<T> fetch() {
+        MappingTimer<?> mapping = timeMapping();
+        long start = begin();
+        try {
+            List<T> results = QueryDeadline.guard(entityManager, super::fetch);
+            end("list", results.size(), start, mapping);
+            return results;
+        } finally {
+            restore(mapping);
+        }
+    }
+
+    @Override
+    public T fetchOne() {
+        MappingTimer<?> mapping = timeMapping();
+        long start = begin();
+        try {
+            T result = QueryDeadline.guard(entityManager, super::fetchOne);
+            end("one", result != null ? 1 : 0, start, mapping);
+            return result;
+        } finally {
+            restore(mapping);
+        }
+    }
+
+    @Override
+    public long fetchCount() {
+        long start = begin();
+        long count = QueryDeadline.guard(entityManager, super::fetchCount);
+        end("count", 1, start, null);
+        return count;
+    }
+
+    @Override
+    public QueryResults<T> fetchResults() {
+        MappingTimer<?> mapping = timeMapping();
+        long start = begin();
+        try {
+            QueryResults<T> results = QueryDeadline.guard(entityManager, super::fetchResults);
+            end("results", results.getResults().size(), start, mapping);
+            return results;
+        } finally {
+            restore(mapping);
+        }
+    }
+
+    @Override
+    protected Query createQuery(QueryModifiers modifiers, boolean forCount) {
+        long start = System.nanoTime();
+        try {
+            Query query = super.createQuery(modifiers, forCount);
+            QueryDeadline.apply(query);
+            return query;
+        } finally {
+            prepareNanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public InstrumentedJPAQuery<T> clone(EntityManager entityManager, JPQLTemplates templates) {
+        InstrumentedJPAQuery<T> q = new InstrumentedJPAQuery<>(entityManager, templates, getMetadata().clone(), instrumentation);
+        q.clone(this);
+        return q;
+    }
+
+    @Override
+    public InstrumentedJPAQuery<T> clone(EntityManager entityManager) {
+        return clone(entityManager, JPAProvider.getTemplates(entityManager));
+    }
+
+    private long begin() {
+        prepareNanos = 0;
+        return System.nanoTime();
+    }
+
+    private void end(String kind, long rows, long start, MappingTimer<?> mapping) {
+        long prepare = prepareNanos;
+        long fetch = System.nanoTime() - start - prepare;
+        instrumentation.record(kind, rows, prepare, fetch, mapping != null ? mapping.nanos : 0);
+    }
+
+    /**
+     * 프로젝션이 FactoryExpression 이면 newInstance 시간을 재는 래퍼로 잠시 바꾼다.
+     */
+    private MappingTimer<?> timeMapping() {
+        Expression<?> projection = getMetadata().getProjection();
+        if (!(projection instanceof FactoryExpression) || !instrumentation.isMappingTimed()) {
+            return null;
+        }
+        MappingTimer<?> timer = new MappingTimer<>((FactoryExpression<?>) projection);
+        getMetadata().setProjection(timer);
+        return timer;
+    }
+
+    private void restore(MappingTimer<?> mapping) {
+        if (mapping != null) {
+            getMetadata().setProjection(mapping.delegate);
+        }
+    }
+
+    private static final class MappingTimer<R> extends FactoryExpressionBase<R> {
+
+        private final FactoryExpression<R> delegate;
+        private long nanos;
+
+        private MappingTimer(FactoryExpression<R> delegate) {
+            super(delegate.getType());
+            this.delegate = delegate;
+        }
+
+        @Override
+        public List<Expression<?>> getArgs() {
+            return delegate.getArgs();
+        }
+
+        @Override
+        public R newInstance(Object... args) {
+            long start = System.nanoTime();
+            try {
+                return delegate.newInstance(args);
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public <C, S> C accept(Visitor<C, S> v, S context) {
+            return v.visit(this, context);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import javax.persistence.EntityManager;
+
+/**
+ * select, selectFrom, from 으로 만드는 조회 쿼리를 InstrumentedJPAQuery 로 생성한다.
+ * update, delete 절은 JPAQueryFactory 와 같다.
+ */
+public class InstrumentedJPAQueryFactory extends JPAQueryFactory {
+
+    private final EntityManager em;
+    private final QueryInstrumentation instrumentation;
+
+    public InstrumentedJPAQueryFactory(EntityManager em, QueryInstrumentation instrumentation) {
+        super(em);
+        this.em = em;
+        this.instrumentation = instrumentation;
+    }
+
+    @Override
+    public JPAQuery<?> query() {
+        return new InstrumentedJPAQuery<Void>(em, instrumentation);
+    }
+}
@@ -0,0 +1,209 @@
+package study.querydsl.repository.support;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.HibernateException;
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEvent;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.LoadEvent;
+import org.hibernate.event.spi.LoadEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * N+1 쿼리 감지
+ * 지연 로딩(프록시 초기화, 컬렉션 초기화)을 범위(HTTP 요청 또는 트랜잭션)마다 모양별로 센다.
+ * 모양은 엔티티 이름(ex. study.querydsl.entity.Team) 또는 컬렉션 역할(ex. study.querydsl.entity.Team.members)이다.
+ * 배치 로딩(default_batch_fetch_size)으로 함께 올라온 엔티티, 컬렉션은 세지 않는다.
+ * 같은 모양의 지연 로딩이 threshold 번이 되면 경고 로그를 남기고 jpa.n-plus-one{shape} 를 올린다.
+ * strict 모드(테스트)에서는 IllegalStateException 을 던져서 테스트를 실패시킨다.
+ *
+ * 범위마다 실행한 SQL 개수는 jpa.statements{scope=request|transaction} 로 기록한다. (p6spy)
+ * HTTP 요청 범위는 NPlusOneDetectionFilter 가 열고, 요청 밖에서는 트랜잭션이 끝날 때까지를 범위로 한다.
+ *
+ * 2차 캐시(Team @Cache)에서 읽는 지연 로딩은 SQL 이 나가지 않으므로 세지 않는다.
+ */
+@Slf4j
+@Component
+public class NPlusOneDetector extends SimpleJdbcEventListener
+        implements LoadEventListener, InitializeCollectionEventListener {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private final EntityManagerFactory emf;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int threshold;
+    private final boolean strict;
+
+    public NPlusOneDetector(EntityManagerFactory emf, MeterRegistry meterRegistry,
+                            @Value("${member.n-plus-one.enabled:true}") boolean enabled,
+                            @Value("${member.n-plus-one.threshold:5}") int threshold,
+                            @Value("${member.n-plus-one.strict:false}") boolean strict) {
+        this.emf = emf;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.threshold = threshold;
+        this.strict = strict;
+    }
+
+    @PostConstruct
+    public void register() {
+        if (!enabled) {
+            return;
+        }
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        //로딩 전에 영속성 컨텍스트를 확인해야 하므로 기본 리스너보다 먼저 실행
+        registry.prependListeners(EventType.LOAD, this);
+        registry.appendListeners(EventType.INIT_COLLECTION, this);
+    }
+
+    /**
+     * 범위를 연다. 이미 열린 범위가 있으면 그 범위에 포함된다. (요청 안의 트랜잭션)
+     */
+    public QueryContext.Scope open(String name, String kind) {
+        if (!enabled || CURRENT.get() != null) {
+            return () -> {
+            };
+        }
+        Scope scope = new Scope(name, kind);
+        CURRENT.set(scope);
+        return () -> {
+            CURRENT.remove();
+            close(scope);
+        };
+    }
+
+    @Override
+    public void onLoad(LoadEvent event, LoadType loadType) throws HibernateException {
+        if (loadType != LoadEventListener.IMMEDIATE_LOAD) {
+            return;
+        }
+        EventSource session = event.getSession();
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(event.getEntityClassName());
+        //프록시 초기화, 배치 로딩으로 이미 영속성 컨텍스트에 올라온 엔티티, 2차 캐시에 있는 엔티티는 DB 를 조회하지 않으므로 제외
+        if (!isLoaded(event, persister) && !isCached(event, persister)) {
+            lazyLoaded(event.getEntityClassName());
+        }
+    }
+
+    private static boolean isLoaded(LoadEvent event, EntityPersister persister) {
+        EventSource session = event.getSession();
+        EntityKey key = session.generateEntityKey(event.getEntityId(), persister);
+        return session.getPersistenceContextInternal().getEntity(key) != null;
+    }
+
+    /**
+     * 기본 리스너가 2차 캐시에서 읽을 수 있는지 (캐시 모드 반영)
+     * get 으로 확인하면 기본 리스너의 조회와 함께 2차 캐시 조회 통계가 두 번 잡히므로 통계에 들어가지 않는 contains 로 확인한다.
+     * (커밋 전 변경으로 잠긴 항목도 있는 것으로 보지만, 그 짧은 동안의 지연 로딩을 세지 않을 뿐이다)
+     */
+    private static boolean isCached(LoadEvent event, EntityPersister persister) {
+        EventSource session = event.getSession();
+        if (!persister.canReadFromCache() || !session.getCacheMode().isGetEnabled()) {
+            return false;
+        }
+        EntityDataAccess cacheAccess = persister.getCacheAccessStrategy();
+        Object cacheKey = cacheAccess.generateCacheKey(event.getEntityId(), persister, session.getFactory(), session.getTenantIdentifier());
+        return cacheAccess.contains(cacheKey);
+    }
+
+    @Override
+    public void onInitializeCollection(InitializeCollectionEvent event) throws HibernateException {
+        lazyLoaded(event.getCollection().getRole());
+    }
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation info, long timeElapsedNanos, SQLException e) {
+        Scope scope = current();
+        if (scope != null) {
+            scope.statements++;
+        }
+    }
+
+    private void lazyLoaded(String shape) {
+        Scope scope = current();
+        if (scope == null) {
+            return;
+        }
+        int count = scope.lazyLoads.merge(shape, 1, Integer::sum);
+        if (count != threshold) {
+            return;
+        }
+
+        Counter.builder("jpa.n-plus-one").tag("shape", shape).register(meterRegistry).increment();
+        String message = String.format("N+1 suspected: %d lazy loads of %s in %s (%s)",
+                count, shape, scope.name, QueryContext.current().getMethod());
+        if (strict) {
+            throw new IllegalStateException(message + ", use fetch join or batch fetching");
+        }
+        log.warn(message);
+    }
+
+    /**
+     * 열린 범위가 없으면 트랜잭션 범위를 연다.
+     */
+    private Scope current() {
+        if (!enabled) {
+            return null;
+        }
+        Scope scope = CURRENT.get();
+        if (scope != null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return scope;
+        }
+        QueryContext.Scope transactionScope = open(QueryContext.current().getMethod(), "transaction");
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                transactionScope.close();
+            }
+        });
+        return CURRENT.get();
+    }
+
+    private void close(Scope scope) {
+        DistributionSummary.builder("jpa.statements")
+                .tag("scope", scope.kind)
+                .register(meterRegistry)
+                .record(scope.statements);
+        scope.lazyLoads.forEach((shape, count) -> {
+            if (count >= threshold) {
+                log.warn("{} lazy loads of {} in {}, {} statements in total", count, shape, scope.name, scope.statements);
+            }
+        });
+    }
+
+    private static final class Scope {
+
+        private final String name;
+        private final String kind;
+        private final Map<String, Integer> lazyLoads = new HashMap<>();
+        private int statements;
+
+        private Scope(String name, String kind) {
+            this.name = name;
+            this.kind = kind;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package study.querydsl.repository.support;
+
+import com.zaxxer.hikari.SQLExceptionOverride;
+
+import java.sql.SQLException;
+
+/**
+ * 쿼리 취소(SQLSTATE 57014)로 커넥션을 버리지 않는다.
+ * HikariCP 는 57014 를 커넥션 오류로 보고 커넥션을 닫는데, QueryDeadline 이 마감 시간에 취소한 쿼리도 같은 상태 코드로 실패한다.
+ * 그러면 이어지는 롤백이 닫힌 커넥션에서 실패하고(TransactionSystemException) 커넥션도 다시 만들어야 한다.
+ *
+ * spring.datasource.hikari.exception-override-class-name 으로 등록한다.
+ */
+public class QueryCancelExceptionOverride implements SQLExceptionOverride {
+
+    private static final String QUERY_CANCELED = "57014";
+
+    @java.lang.Override
+    public Override adjudicate(SQLException e) {
+        return QUERY_CANCELED.equals(e.getSQLState()) ? Override.DO_NOT_EVICT : Override.CONTINUE_EVICT;
+    }
+}
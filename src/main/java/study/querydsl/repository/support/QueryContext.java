@@ -0,0 +1,78 @@
+package study.querydsl.repository.support;
+
+/**
+ * 지금 실행 중인 리포지토리 메서드와 검색 조건 모양(MemberSearchCondition.shape())
+ * RepositoryQueryAspect 가 리포지토리 메서드 호출마다 설정하고, InstrumentedJPAQuery 가 메트릭 태그로 사용한다.
+ * 리포지토리 밖에서 실행한 쿼리는 method = "unknown" 이다.
+ */
+public final class QueryContext {
+
+    public static final String NO_SHAPE = "-";
+    private static final QueryContext UNKNOWN = new QueryContext("unknown", NO_SHAPE);
+    private static final ThreadLocal<QueryContext> CURRENT = new ThreadLocal<>();
+
+    private final String method;
+    private final String shape;
+
+    private QueryContext(String method, String shape) {
+        this.method = method;
+        this.shape = shape;
+    }
+
+    public static QueryContext current() {
+        QueryContext context = CURRENT.get();
+        return context != null ? context : UNKNOWN;
+    }
+
+    /**
+     * 다른 스레드에서 실행하는 쿼리(ex. 비동기 카운트)는 호출한 스레드의 current() 를 넘겨서 연다.
+     */
+    public static Scope open(QueryContext context) {
+        QueryContext previous = CURRENT.get();
+        CURRENT.set(context);
+        return () -> {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    public static Scope open(String method, String shape) {
+        return open(new QueryContext(method, shape));
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getShape() {
+        return shape;
+    }
+
+    /**
+     * 열어둔 범위, 닫으면 이전 상태로 돌아간다.
+     * 범위 안에서 실행할 일은 call 로 넘긴다. (try-with-resources 로 열면 쓰지 않는 변수가 생긴다)
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+
+        /**
+         * call 을 이 범위 안에서 실행하고 범위를 닫는다.
+         */
+        default <T, E extends Throwable> T call(ScopedCall<T, E> call) throws E {
+            try {
+                return call.call();
+            } finally {
+                close();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface ScopedCall<T, E extends Throwable> {
+        T call() throws E;
+    }
+}
@@ -0,0 +1,139 @@
+package study.querydsl.repository.support;
+
+import org.hibernate.Session;
+import org.springframework.orm.jpa.EntityManagerProxy;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 요청 단위 쿼리 마감 시간 (deadline)
+ * 컨트롤러가 요청마다 시간 예산을 열면(open), 그 요청에서 실행하는 쿼리는 남은 시간만큼만 실행된다.
+ * - apply : 남은 시간을 javax.persistence.query.timeout 힌트로 건다. (JDBC 타임아웃은 초 단위이므로 올림)
+ * - guard : 마감 시간에 실행 중인 쿼리를 취소한다. (Session.cancelQuery, 밀리초 단위)
+ * 남은 시간이 없으면 DB 에 가지 않고, 마감 시간이 지나서 실패하면 QueryDeadlineExceededException 을 던진다.
+ *
+ * InstrumentedJPAQuery 로 만든 Querydsl 쿼리와 MemberSearchTemplateCache 에 적용되어 있다.
+ * 다른 스레드에서 실행하는 쿼리(ex. 비동기 카운트)는 호출한 스레드의 current() 를 넘겨서 연다.
+ */
+public final class QueryDeadline {
+
+    public static final String TIMEOUT_HINT = "javax.persistence.query.timeout";
+
+    private static final ThreadLocal<QueryDeadline> CURRENT = new ThreadLocal<>();
+    private static final ScheduledThreadPoolExecutor WATCHDOG = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "query-deadline-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        WATCHDOG.setRemoveOnCancelPolicy(true);
+    }
+
+    private final long deadlineNanos;
+
+    private QueryDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * @return 열린 마감 시간, 없으면 null
+     */
+    public static QueryDeadline current() {
+        return CURRENT.get();
+    }
+
+    public static QueryContext.Scope open(Duration budget) {
+        return open(new QueryDeadline(System.nanoTime() + budget.toNanos()));
+    }
+
+    public static QueryContext.Scope open(QueryDeadline deadline) {
+        QueryDeadline previous = CURRENT.get();
+        //바깥 범위보다 늦은 마감 시간은 쓰지 않는다.
+        if (deadline == null || (previous != null && previous.deadlineNanos <= deadline.deadlineNanos)) {
+            return () -> {
+            };
+        }
+        CURRENT.set(deadline);
+        return () -> {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    public long remainingNanos() {
+        return deadlineNanos - System.nanoTime();
+    }
+
+    public boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+
+    /**
+     * 남은 시간을 쿼리 타임아웃 힌트로 건다. 이미 더 짧은 타임아웃이 있으면 그대로 둔다.
+     */
+    public static void apply(Query query) {
+        QueryDeadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return;
+        }
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline.remainingNanos());
+        if (remainingMillis <= 0) {
+            throw new QueryDeadlineExceededException("query deadline exceeded before execution", null);
+        }
+        long timeoutMillis = TimeUnit.SECONDS.toMillis(TimeUnit.MILLISECONDS.toSeconds(remainingMillis + 999));
+        Object existing = query.getHints().get(TIMEOUT_HINT);
+        if (existing instanceof Number && ((Number) existing).longValue() > 0
+                && ((Number) existing).longValue() <= timeoutMillis) {
+            return;
+        }
+        query.setHint(TIMEOUT_HINT, (int) timeoutMillis);
+    }
+
+    /**
+     * 마감 시간이 되면 em 에서 실행 중인 쿼리를 취소한다.
+     */
+    public static <R> R guard(EntityManager em, Supplier<R> execution) {
+        QueryDeadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return execution.get();
+        }
+        Session session = targetSession(em);
+        if (session == null) {
+            return execution.get();
+        }
+        ScheduledFuture<?> cancel = WATCHDOG.schedule(session::cancelQuery, deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+        try {
+            return execution.get();
+        } catch (RuntimeException e) {
+            if (deadline.isExpired() && !(e instanceof QueryDeadlineExceededException)) {
+                throw new QueryDeadlineExceededException("query cancelled at deadline", e);
+            }
+            throw e;
+        } finally {
+            cancel.cancel(false);
+        }
+    }
+
+    /**
+     * 다른 스레드에서 취소하므로 공유 EntityManager 프록시가 아닌 지금 사용 중인 세션을 잡아둔다.
+     * 트랜잭션(또는 OSIV)에 묶인 EntityManager 가 없으면 쿼리마다 새 EntityManager 를 쓰므로 null (타임아웃 힌트만 적용)
+     */
+    private static Session targetSession(EntityManager em) {
+        try {
+            EntityManager target = em instanceof EntityManagerProxy ? ((EntityManagerProxy) em).getTargetEntityManager() : em;
+            return target.unwrap(Session.class);
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+}
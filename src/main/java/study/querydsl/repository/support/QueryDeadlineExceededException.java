@@ -0,0 +1,13 @@
+package study.querydsl.repository.support;
+
+import org.springframework.dao.QueryTimeoutException;
+
+/**
+ * 요청의 쿼리 마감 시간(QueryDeadline)이 지나서 쿼리를 실행하지 않았거나 취소했다.
+ */
+public class QueryDeadlineExceededException extends QueryTimeoutException {
+
+    public QueryDeadlineExceededException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
+}
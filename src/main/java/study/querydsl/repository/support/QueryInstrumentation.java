@@ -0,0 +1,58 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 쿼리 하나의 측정값을 Micrometer 와 JFR 로 기록한다.
+ *
+ * 메트릭 (태그: method, shape, kind)
+ * - repository.query : 쿼리 시간 (prepare + fetch)
+ * - repository.query.rows : 결과 로우 수
+ * kind: list(fetch), one(fetchOne), count(fetchCount), results(fetchResults)
+ */
+@Component
+public class QueryInstrumentation {
+
+    private final MeterRegistry meterRegistry;
+
+    public QueryInstrumentation(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public boolean isMappingTimed() {
+        return RepositoryQueryEvent.isRecording();
+    }
+
+    public void record(String kind, long rows, long prepareNanos, long fetchNanos, long mappingNanos) {
+        QueryContext context = QueryContext.current();
+        Timer.builder("repository.query")
+                .tag("method", context.getMethod())
+                .tag("shape", context.getShape())
+                .tag("kind", kind)
+                .register(meterRegistry)
+                .record(prepareNanos + fetchNanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("repository.query.rows")
+                .tag("method", context.getMethod())
+                .tag("shape", context.getShape())
+                .tag("kind", kind)
+                .register(meterRegistry)
+                .record(rows);
+
+        RepositoryQueryEvent event = new RepositoryQueryEvent();
+        if (event.shouldCommit()) {
+            event.method = context.getMethod();
+            event.shape = context.getShape();
+            event.kind = kind;
+            event.rows = rows;
+            event.prepareTime = prepareNanos;
+            event.fetchTime = fetchNanos;
+            event.mappingTime = mappingNanos;
+            event.commit();
+        }
+    }
+}
@@ -12,7 +12,9 @@ import org.springframework.data.jpa.repository.support.JpaEntityInformationSuppo
 import org.springframework.data.jpa.repository.support.Querydsl;
 import org.springframework.data.querydsl.SimpleEntityPathResolver;
 import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.hibernate.jpa.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
 import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
@@ -20,11 +22,18 @@ import java.util.List;
 import java.util.function.Function;
 /**
  * Querydsl 4.x 버전에 맞춘 Querydsl 지원 라이브러리
+ * applyPagination 의 카운트 쿼리는 CountQueryJoinPruner 로 사용하지 않는 to-one left join 을 제거하고 실행한다.
+ *
+ * 조회 전용 모드
+ * - 하위 리포지토리의 public 메서드는 읽기 전용 트랜잭션 (FlushMode.MANUAL, 세션 기본 읽기 전용), 쓰기 메서드는 @Transactional 로 재정의
+ * - select, selectFrom, applyPagination 쿼리에 org.hibernate.readOnly 힌트: 쓰기 트랜잭션에 참여해도 조회한 엔티티의 스냅샷을 만들지 않는다.
+ * > 주의: 조회한 엔티티를 수정해도 반영되지 않는다. 수정할 엔티티는 em.find() 등으로 다시 조회할 것
  *
  * @author Younghan Kim
  * @see org.springframework.data.jpa.repository.support.QuerydslRepositorySupport
  */
 @Repository
+@Transactional(readOnly = true)
 public abstract class Querydsl4RepositorySupport {
       private final Class domainClass;
       private Querydsl querydsl;
@@ -37,7 +46,7 @@ public abstract class Querydsl4RepositorySupport {
       }
 
       @Autowired
-      public void setEntityManager(EntityManager entityManager) {
+      public void setEntityManager(EntityManager entityManager, QueryInstrumentation instrumentation) {
          Assert.notNull(entityManager, "EntityManager must not be null!");
          JpaEntityInformation entityInformation =
                  JpaEntityInformationSupport.getEntityInformation(domainClass, entityManager);
@@ -46,7 +55,7 @@ public abstract class Querydsl4RepositorySupport {
          this.entityManager = entityManager;
          this.querydsl = new Querydsl(entityManager, new
                  PathBuilder<>(path.getType(), path.getMetadata()));
-         this.queryFactory = new JPAQueryFactory(entityManager);
+         this.queryFactory = new InstrumentedJPAQueryFactory(entityManager, instrumentation);
       }
 
       @PostConstruct
@@ -69,27 +78,30 @@ public abstract class Querydsl4RepositorySupport {
       }
 
       protected <T> JPAQuery<T> select(Expression<T> expr) {
-          return getQueryFactory().select(expr);
+          return getQueryFactory().select(expr).setHint(QueryHints.HINT_READONLY, true);
       }
 
       protected <T> JPAQuery<T> selectFrom(EntityPath<T> from) {
-          return getQueryFactory().selectFrom(from);
+          return getQueryFactory().selectFrom(from).setHint(QueryHints.HINT_READONLY, true);
       }
 
       protected <T> Page<T> applyPagination(Pageable pageable,
                                             Function<JPAQueryFactory, JPAQuery> contentQuery) {
                                                   JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
+          jpaQuery.setHint(QueryHints.HINT_READONLY, true);
           List<T> content = getQuerydsl().applyPagination(pageable, jpaQuery).fetch();
-          return PageableExecutionUtils.getPage(content, pageable, jpaQuery::fetchCount);
+          JPAQuery countQuery = CountQueryJoinPruner.prune(getEntityManager(), jpaQuery);
+          return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
       }
 
       protected <T> Page<T> applyPagination(Pageable pageable,
                                             Function<JPAQueryFactory, JPAQuery> contentQuery, Function<JPAQueryFactory,
               JPAQuery> countQuery) {
           JPAQuery jpaContentQuery = contentQuery.apply(getQueryFactory());
+          jpaContentQuery.setHint(QueryHints.HINT_READONLY, true);
           List<T> content = getQuerydsl().applyPagination(pageable, jpaContentQuery).fetch();
 
-          JPAQuery countResult = countQuery.apply(getQueryFactory());
+          JPAQuery countResult = CountQueryJoinPruner.prune(getEntityManager(), countQuery.apply(getQueryFactory()));
           return PageableExecutionUtils.getPage(content, pageable, countResult::fetchCount);
       }
 
@@ -0,0 +1,94 @@
+package study.querydsl.repository.support;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 읽기 복제본 라우팅 설정 (member.replica.enabled=true 일 때만)
+ * spring.datasource 를 primary 로, member.replica.urls 를 복제본으로 하는 ReplicaRoutingDataSource 를 DataSource 빈으로 등록한다.
+ * 복제본 계정과 커넥션 풀 설정(spring.datasource.hikari.*)은 primary 와 같다.
+ *
+ * 하이버네이트는 기본 설정(DELAYED_ACQUISITION_AND_HOLD)에서 open-in-view 동안 커넥션 하나를 계속 쥐고 있으므로,
+ * 읽기 전용 트랜잭션 뒤의 쓰기 트랜잭션이 복제본 커넥션을 그대로 쓰지 않도록 트랜잭션이 끝나면 커넥션을 반납하게 한다.
+ *
+ * 엔티티 변경(EntityChangedEvent, 플러시와 커밋 때 발행)을 받으면 max-lag 동안 읽기도 primary 로 보낸다. (markWritten)
+ */
+@Configuration
+@ConditionalOnProperty(name = "member.replica.enabled", havingValue = "true")
+public class ReplicaDataSourceConfig implements DisposableBean {
+
+    private ReplicaRoutingDataSource routingDataSource;
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties, Environment environment,
+                                 @Value("${member.replica.selection:round-robin}") String selection,
+                                 @Value("${member.replica.max-lag:2s}") Duration maxLag,
+                                 @Value("${member.replica.lag-check-interval:1s}") Duration lagCheckInterval) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = pool("primary", properties.determineUrl(), properties, binder);
+
+        List<HikariDataSource> replicas = new ArrayList<>();
+        List<String> urls = binder.bind("member.replica.urls", Bindable.listOf(String.class)).orElse(List.of());
+        for (int i = 0; i < urls.size(); i++) {
+            replicas.add(pool("replica-" + (i + 1), urls.get(i), properties, binder));
+        }
+
+        routingDataSource = new ReplicaRoutingDataSource(primary, replicas, selection, maxLag, lagCheckInterval);
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    @Bean
+    public MeterBinder replicaRoutingMetrics(DataSource dataSource) {
+        return registry -> routingDataSource.bindTo(registry);
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (routingDataSource != null) {
+            routingDataSource.markWritten();
+        }
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer releaseConnectionAfterTransaction() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+
+    private static HikariDataSource pool(String name, String url, DataSourceProperties properties, Binder binder) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+        dataSource.setPoolName(name);
+        return dataSource;
+    }
+
+    @Override
+    public void destroy() {
+        if (routingDataSource != null) {
+            routingDataSource.close();
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package study.querydsl.repository.support;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 읽기 전용 트랜잭션을 복제본(replica)으로 보내는 DataSource
+ * @Transactional(readOnly = true) 인 검색, 카운트, 내보내기는 복제본 커넥션을, 나머지(쓰기, 트랜잭션 밖)는 primary 커넥션을 쓴다.
+ *
+ * 복제본 선택
+ * - round-robin : 정상 복제본을 돌아가면서
+ * - least-loaded : 사용 중인 커넥션 + 커넥션을 기다리는 스레드가 가장 적은 복제본
+ *
+ * 복제 지연
+ * primary 의 replica_heartbeat 에 현재 시각을 주기적으로 쓰고(beat), 복제본이 아직 받지 못한 가장 오래된 beat 부터 지난 시간을 지연 시간으로 본다. (같은 시계 기준)
+ * 복제본을 먼저 읽고 새 beat 를 쓴다. 쓰자마자 읽으면 방금 쓴 beat 는 아직 복제되지 않았을 테니 확인 주기만큼 지연이 부풀려진다.
+ * (확인 주기가 max-lag 이상이면 모든 복제본이 계속 뒤처진 것으로 보인다)
+ * 복제본이 이전에 쓴 beat 를 모두 받았으면 지연은 0, 기록해둔 beat 보다도 오래된 값이면 그 값과의 차이로 본다.
+ * 지연이 max-lag 를 넘거나 읽지 못한 복제본은 다음 확인 때까지 쓰지 않고, 정상 복제본이 없으면 primary 로 보낸다.
+ *
+ * 쓰기 직후
+ * 정상 복제본도 max-lag 까지는 방금 쓴 변경을 아직 받지 못했을 수 있다. 이때 읽은 결과가 다시 캐시되면 캐시 TTL 동안 옛 데이터가 남는다.
+ * 그래서 이 프로세스에서 엔티티가 바뀌면(markWritten, EntityChangedEvent) max-lag 동안은 읽기 전용 트랜잭션도 primary 로 보낸다.
+ * (다른 프로세스의 쓰기는 알 수 없으므로 해당하지 않는다.)
+ *
+ * 트랜잭션의 readOnly 는 커넥션을 얻은 뒤에 정해지므로 LazyConnectionDataSourceProxy 로 감싸서 첫 쿼리 때 고르게 한다.
+ * (ReplicaDataSourceConfig)
+ *
+ * 메트릭: datasource.route{target=primary|replica|fallback|after-write}, datasource.replica.lag{replica} (ms, 확인 실패 시 NaN)
+ * 풀마다 hikaricp.connections.*{pool=primary|replica-N}
+ * MeterRegistry 가 DataSource 빈에 의존하므로(actuator) 생성자에서 받지 않고 MeterBinder 로 나중에 연결한다.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements MeterBinder, Closeable {
+
+    static final String PRIMARY = "primary";
+    private static final long HEARTBEAT_ID = 1;
+
+    private final HikariDataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final boolean leastLoaded;
+    private final long maxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile long primaryUntilMillis;
+    /**
+     * 이 프로세스가 쓴 beat 시각 (오래된 순), max-lag 보다 오래된 것은 가장 최근 하나만 남긴다.
+     */
+    private final List<Long> beats = new ArrayList<>();
+    private final ScheduledExecutorService monitor;
+    private final CompositeMeterRegistry meters = new CompositeMeterRegistry();
+
+    private final Counter routedToPrimary;
+    private final Counter routedToReplica;
+    private final Counter fallbacks;
+    private final Counter afterWrites;
+
+    public ReplicaRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicaDataSources,
+                                    String selection, Duration maxLag, Duration lagCheckInterval) {
+        this.primary = primary;
+        this.leastLoaded = "least-loaded".equals(selection);
+        this.maxLagMillis = maxLag.toMillis();
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (HikariDataSource dataSource : replicaDataSources) {
+            Replica replica = new Replica(dataSource);
+            replicas.add(replica);
+            targets.put(replica.name, dataSource);
+            Gauge.builder("datasource.replica.lag", replica, r -> r.lagMillis)
+                    .tag("replica", replica.name)
+                    .baseUnit("milliseconds")
+                    .register(meters);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+
+        this.routedToPrimary = Counter.builder("datasource.route").tag("target", "primary").register(meters);
+        this.routedToReplica = Counter.builder("datasource.route").tag("target", "replica").register(meters);
+        this.fallbacks = Counter.builder("datasource.route").tag("target", "fallback").register(meters);
+        this.afterWrites = Counter.builder("datasource.route").tag("target", "after-write").register(meters);
+
+        this.monitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresh();
+        monitor.scheduleWithFixedDelay(this::refresh, lagCheckInterval.toMillis(), lagCheckInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || replicas.isEmpty()) {
+            routedToPrimary.increment();
+            return PRIMARY;
+        }
+        if (System.currentTimeMillis() < primaryUntilMillis) {
+            afterWrites.increment();
+            return PRIMARY;
+        }
+        Replica replica = leastLoaded ? leastLoaded() : roundRobin();
+        if (replica == null) {
+            fallbacks.increment();
+            return PRIMARY;
+        }
+        routedToReplica.increment();
+        return replica.name;
+    }
+
+    private Replica roundRobin() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private Replica leastLoaded() {
+        Replica selected = null;
+        int selectedLoad = Integer.MAX_VALUE;
+        for (Replica replica : replicas) {
+            if (replica.healthy && replica.load() < selectedLoad) {
+                selected = replica;
+                selectedLoad = replica.load();
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * 방금 primary 에 쓴 변경이 복제될 때까지(max-lag) 읽기도 primary 로 보낸다.
+     */
+    public void markWritten() {
+        primaryUntilMillis = System.currentTimeMillis() + maxLagMillis;
+    }
+
+    /**
+     * 복제본마다 지연 시간을 확인하고, primary 에 다음 확인에 쓸 heartbeat 를 쓴다. (lag-check-interval 마다 실행)
+     */
+    public synchronized void refresh() {
+        long now = System.currentTimeMillis();
+        for (Replica replica : replicas) {
+            try {
+                long lag = lagMillis(readHeartbeat(replica.dataSource), now);
+                replica.lagMillis = lag;
+                replica.healthy = lag <= maxLagMillis;
+                if (!replica.healthy) {
+                    log.warn("{} lags {}ms behind primary, routing its reads to other replicas or primary", replica.name, lag);
+                }
+            } catch (SQLException e) {
+                replica.lagMillis = Double.NaN;
+                replica.healthy = false;
+                log.warn("{} is unavailable, routing its reads to other replicas or primary: {}", replica.name, e.getMessage());
+            }
+        }
+        try {
+            writeHeartbeat(now);
+            beats.add(now);
+        } catch (SQLException e) {
+            log.warn("failed to write replica heartbeat to primary: {}", e.getMessage());
+        }
+        //max-lag 보다 오래된 beat 는 가장 최근 하나만 있으면 된다. (그보다 오래된 값을 읽은 복제본은 어차피 max-lag 를 넘는다)
+        while (beats.size() > 1 && beats.get(1) <= now - maxLagMillis) {
+            beats.remove(0);
+        }
+    }
+
+    /**
+     * 복제본이 받지 못한 가장 오래된 beat 부터 지난 시간
+     * 모두 받았으면 0, 기록해둔 beat 보다 오래된 값이면(시작 직후, 다른 프로세스가 쓴 값) 그 값부터 지난 시간
+     */
+    private long lagMillis(long replicatedBeat, long now) {
+        if (beats.isEmpty() || replicatedBeat < beats.get(0)) {
+            return Math.max(0, now - replicatedBeat);
+        }
+        for (long beat : beats) {
+            if (beat > replicatedBeat) {
+                return Math.max(0, now - beat);
+            }
+        }
+        return 0;
+    }
+
+    private void writeHeartbeat(long now) throws SQLException {
+        try (Connection connection = primary.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("create table if not exists replica_heartbeat (id bigint primary key, beat_at bigint not null)");
+            }
+            try (PreparedStatement update = connection.prepareStatement("update replica_heartbeat set beat_at = ? where id = ?")) {
+                update.setLong(1, now);
+                update.setLong(2, HEARTBEAT_ID);
+                if (update.executeUpdate() > 0) {
+                    return;
+                }
+            }
+            try (PreparedStatement insert = connection.prepareStatement("insert into replica_heartbeat (id, beat_at) values (?, ?)")) {
+                insert.setLong(1, HEARTBEAT_ID);
+                insert.setLong(2, now);
+                insert.executeUpdate();
+            }
+        }
+    }
+
+    private static long readHeartbeat(HikariDataSource replica) throws SQLException {
+        try (Connection connection = replica.getConnection();
+             PreparedStatement select = connection.prepareStatement("select beat_at from replica_heartbeat where id = ?")) {
+            select.setLong(1, HEARTBEAT_ID);
+            try (ResultSet rs = select.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("no heartbeat replicated yet");
+                }
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        meters.add(registry);
+        primary.setMetricRegistry(registry);
+        replicas.forEach(replica -> replica.dataSource.setMetricRegistry(registry));
+    }
+
+    @Override
+    public void close() {
+        monitor.shutdownNow();
+        replicas.forEach(replica -> replica.dataSource.close());
+        primary.close();
+    }
+
+    private static final class Replica {
+
+        private final String name;
+        private final HikariDataSource dataSource;
+        private volatile boolean healthy;
+        private volatile double lagMillis = Double.NaN;
+
+        private Replica(HikariDataSource dataSource) {
+            this.name = dataSource.getPoolName();
+            this.dataSource = dataSource;
+        }
+
+        private int load() {
+            HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+            return pool == null ? 0 : pool.getActiveConnections() + pool.getThreadsAwaitingConnection();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package study.querydsl.repository.support;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+
+/**
+ * 리포지토리 메서드마다 QueryContext(메서드 이름, 검색 조건 모양)를 설정한다.
+ * 리포지토리 안에서 다른 리포지토리를 호출하면 안쪽 메서드 기준으로 기록된다.
+ */
+@Aspect
+@Component
+public class RepositoryQueryAspect {
+
+    @Around("execution(public * study.querydsl.repository.*Repository*.*(..))")
+    public Object around(ProceedingJoinPoint joinPoint) throws Throwable {
+        String method = AopUtils.getTargetClass(joinPoint.getTarget()).getSimpleName()
+                + "." + joinPoint.getSignature().getName();
+        return QueryContext.open(method, shape(joinPoint.getArgs())).call(joinPoint::proceed);
+    }
+
+    private static String shape(Object[] args) {
+        for (Object arg : args) {
+            if (arg instanceof MemberSearchCondition) {
+                return Integer.toString(((MemberSearchCondition) arg).shape());
+            }
+        }
+        return QueryContext.NO_SHAPE;
+    }
+}
@@ -0,0 +1,56 @@
+package study.querydsl.repository.support;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * 리포지토리 쿼리 JFR 이벤트
+ * 운영 중에 JFR 녹화를 켜면(jcmd <pid> JFR.start) 쿼리마다 메서드, 조건 모양, 로우 수, 단계별 시간이 남는다.
+ * 녹화를 켜지 않으면 기록하지 않는다.
+ */
+@Name("study.querydsl.RepositoryQuery")
+@Label("Repository Query")
+@Category({"Querydsl", "Repository"})
+@Description("Querydsl query executed by a repository method")
+public class RepositoryQueryEvent extends jdk.jfr.Event {
+
+    private static final EventType TYPE = EventType.getEventType(RepositoryQueryEvent.class);
+
+    @Label("Method")
+    String method;
+
+    @Label("Condition Shape")
+    String shape;
+
+    @Label("Kind")
+    String kind;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Prepare Time")
+    @Description("JPQL rendering and JPA query creation")
+    @Timespan
+    long prepareTime;
+
+    @Label("Fetch Time")
+    @Description("Query execution including row mapping")
+    @Timespan
+    long fetchTime;
+
+    @Label("Mapping Time")
+    @Description("DTO construction (FactoryExpression.newInstance)")
+    @Timespan
+    long mappingTime;
+
+    /**
+     * 매핑 시간은 로우마다 시간을 재야 하므로 녹화 중일 때만 측정한다.
+     */
+    static boolean isRecording() {
+        return TYPE.isEnabled();
+    }
+}
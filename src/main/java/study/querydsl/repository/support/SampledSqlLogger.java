@@ -0,0 +1,150 @@
+package study.querydsl.repository.support;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.jdbc.internal.FormatStyle;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 샘플링 SQL 로그 (p6spy JdbcEventListener)
+ * p6spy 기본 로거와 org.hibernate.type: trace 는 모든 쿼리와 바인딩 값을 요청 스레드에서 바로 포맷하고 출력하므로 부하가 크다.
+ * 여기서는 다음 쿼리만 남기고, 포맷과 출력은 별도 스레드에서 한다.
+ * - N 개 중 1 개 (sample-rate)
+ * - slow-threshold 이상 걸린 쿼리와 실패한 쿼리는 전부
+ *
+ * 요청 스레드는 SQL 과 바인딩 값을 치환한 문자열만 버퍼에 넣는다. (샘플링된 쿼리만)
+ * 줄바꿈 포맷(format-sql)은 출력 스레드에서 한다.
+ * 버퍼가 가득 차면 버리고 sql.log{result=dropped} 로 센다. 요청 스레드는 기다리지 않는다.
+ *
+ * 로그: study.querydsl.sql (INFO 샘플, WARN 느린 쿼리/실패)
+ * 메트릭: sql.log{result=sampled|slow|dropped}
+ */
+@Slf4j
+@Component
+public class SampledSqlLogger extends SimpleJdbcEventListener implements DisposableBean {
+
+    private static final org.slf4j.Logger sqlLog = org.slf4j.LoggerFactory.getLogger("study.querydsl.sql");
+
+    private final boolean enabled;
+    private final int sampleRate;
+    private final long slowThresholdNanos;
+    private final boolean bindValues;
+    private final boolean formatSql;
+    private final BlockingQueue<Entry> buffer;
+    private final Counter sampled;
+    private final Counter slow;
+    private final Counter dropped;
+    private final Thread writer;
+
+    public SampledSqlLogger(MeterRegistry meterRegistry,
+                            @Value("${member.sql-log.enabled:false}") boolean enabled,
+                            @Value("${member.sql-log.sample-rate:100}") int sampleRate,
+                            @Value("${member.sql-log.slow-threshold:500ms}") Duration slowThreshold,
+                            @Value("${member.sql-log.bind-values:true}") boolean bindValues,
+                            @Value("${member.sql-log.format-sql:false}") boolean formatSql,
+                            @Value("${member.sql-log.buffer-size:1024}") int bufferSize) {
+        this.enabled = enabled;
+        this.sampleRate = sampleRate;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.bindValues = bindValues;
+        this.formatSql = formatSql;
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.sampled = Counter.builder("sql.log").tag("result", "sampled").register(meterRegistry);
+        this.slow = Counter.builder("sql.log").tag("result", "slow").register(meterRegistry);
+        this.dropped = Counter.builder("sql.log").tag("result", "dropped").register(meterRegistry);
+        this.writer = new Thread(this::drain, "sql-log-writer");
+        this.writer.setDaemon(true);
+        if (enabled) {
+            writer.start();
+        }
+    }
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation info, long timeElapsedNanos, SQLException e) {
+        if (!enabled) {
+            return;
+        }
+        boolean isSlow = timeElapsedNanos >= slowThresholdNanos || e != null;
+        if (!isSlow && (sampleRate <= 0 || ThreadLocalRandom.current().nextInt(sampleRate) != 0)) {
+            return;
+        }
+
+        String sql = bindValues ? info.getSqlWithValues() : info.getSql();
+        Entry entry = new Entry(QueryContext.current().getMethod(), sql, timeElapsedNanos, isSlow, e);
+        if (!buffer.offer(entry)) {
+            dropped.increment();
+            return;
+        }
+        (isSlow ? slow : sampled).increment();
+    }
+
+    private void drain() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Entry entry = buffer.poll(1, TimeUnit.SECONDS);
+                if (entry != null) {
+                    write(entry);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Entry entry;
+        while ((entry = buffer.poll()) != null) {
+            write(entry);
+        }
+    }
+
+    private void write(Entry entry) {
+        try {
+            String sql = formatSql ? FormatStyle.BASIC.getFormatter().format(entry.sql) : entry.sql;
+            long millis = TimeUnit.NANOSECONDS.toMillis(entry.elapsedNanos);
+            if (entry.error != null) {
+                sqlLog.warn("{}ms {} failed: {}\n{}", millis, entry.method, entry.error.getMessage(), sql);
+            } else if (entry.slow) {
+                sqlLog.warn("{}ms {} slow\n{}", millis, entry.method, sql);
+            } else {
+                sqlLog.info("{}ms {}\n{}", millis, entry.method, sql);
+            }
+        } catch (RuntimeException e) {
+            log.warn("failed to write sql log", e);
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (enabled) {
+            writer.interrupt();
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    private static final class Entry {
+
+        private final String method;
+        private final String sql;
+        private final long elapsedNanos;
+        private final boolean slow;
+        private final SQLException error;
+
+        private Entry(String method, String sql, long elapsedNanos, boolean slow, SQLException error) {
+            this.method = method;
+            this.sql = sql;
+            this.elapsedNanos = elapsedNanos;
+            this.slow = slow;
+            this.error = error;
+        }
+    }
+}
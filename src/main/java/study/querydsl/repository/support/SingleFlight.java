@@ -0,0 +1,104 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 같은 키로 동시에 들어온 조회를 하나로 합친다. (single flight)
+ * 먼저 들어온 호출(leader)만 DB 를 조회하고, 조회가 끝나기 전에 같은 키로 들어온 호출은 그 결과를 함께 받는다.
+ * 결과를 공유하므로 반환값은 수정할 수 없는 객체여야 한다.
+ *
+ * 다음 경우에는 합치지 않고 직접 조회한다.
+ * - 쓰기 트랜잭션 안에서 호출 (커밋 전 데이터가 결과에 섞이거나, 다른 트랜잭션의 결과를 받으면 안 되므로)
+ * - maxWait 안에 leader 의 조회가 끝나지 않음
+ * leader 의 조회가 실패하면 기다리던 호출도 같은 예외를 받는다. (leader 의 마감 시간 초과는 제외, 직접 조회)
+ *
+ * 메트릭: {name}.singleflight{result=leader|coalesced|timeout} (coalesced 가 아낀 DB 조회 수)
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Duration maxWait;
+    private final Counter leaders;
+    private final Counter coalesced;
+    private final Counter timeouts;
+
+    public SingleFlight(String name, Duration maxWait, MeterRegistry meterRegistry) {
+        this.maxWait = maxWait;
+        this.leaders = counter(name, "leader", meterRegistry);
+        this.coalesced = counter(name, "coalesced", meterRegistry);
+        this.timeouts = counter(name, "timeout", meterRegistry);
+    }
+
+    private static Counter counter(String name, String result, MeterRegistry meterRegistry) {
+        return Counter.builder(name + ".singleflight").tag("result", result).register(meterRegistry);
+    }
+
+    public V execute(K key, Supplier<V> loader) {
+        if (inReadWriteTransaction()) {
+            return loader.get();
+        }
+
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+        if (existing == null) {
+            leaders.increment();
+            try {
+                V result = loader.get();
+                call.complete(result);
+                return result;
+            } catch (RuntimeException | Error e) {
+                call.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, call);
+            }
+        }
+
+        try {
+            V result = existing.get(waitNanos(), TimeUnit.NANOSECONDS);
+            coalesced.increment();
+            return result;
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            return loader.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof QueryDeadlineExceededException) {
+                //leader 의 마감 시간이 지난 것이므로 남은 시간으로 직접 조회
+                return loader.get();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw (Error) cause;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for in-flight query", e);
+        }
+    }
+
+    /**
+     * 요청의 쿼리 마감 시간(QueryDeadline)이 maxWait 보다 먼저 오면 그때까지만 기다린다.
+     */
+    private long waitNanos() {
+        QueryDeadline deadline = QueryDeadline.current();
+        long wait = maxWait.toNanos();
+        return deadline != null ? Math.max(0, Math.min(wait, deadline.remainingNanos())) : wait;
+    }
+
+    private static boolean inReadWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+}
@@ -0,0 +1,183 @@
+package study.querydsl.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @QueryBean DTO 마다 {DTO 이름}Bean 클래스를 생성한다.
+ * 생성된 클래스는 QueryBeanExpression 을 상속하고, 프로퍼티마다 setter 호출(없으면 필드 대입) 코드를 switch 로 만든다.
+ *
+ * lombok 이 만드는 setter 는 처리 순서에 따라 아직 보이지 않을 수 있으므로, @Data / @Setter 가 붙어 있으면 setter 가 있다고 본다.
+ * 상속받은 프로퍼티는 대상이 아니다. (선언된 필드만)
+ */
+@SupportedAnnotationTypes(QueryBeanProcessor.QUERY_BEAN)
+public class QueryBeanProcessor extends AbstractProcessor {
+
+    static final String QUERY_BEAN = "study.querydsl.projection.QueryBean";
+    private static final String BASE_CLASS = "study.querydsl.projection.QueryBeanExpression";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    error(element, "@QueryBean 은 클래스에만 사용할 수 있습니다.");
+                    continue;
+                }
+                generate((TypeElement) element);
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type) {
+        if (!hasNoArgsConstructor(type)) {
+            error(type, "@QueryBean 은 기본 생성자가 필요합니다.");
+            return;
+        }
+
+        List<String> names = new ArrayList<>();
+        List<String> assignments = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (field.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            String name = field.getSimpleName().toString();
+            String valueType = boxed(field.asType());
+            if (hasSetter(type, field)) {
+                assignments.add("bean.set" + capitalize(name) + "((" + valueType + ") value);");
+            } else if (!field.getModifiers().contains(Modifier.PRIVATE) && !field.getModifiers().contains(Modifier.FINAL)) {
+                assignments.add("bean." + name + " = (" + valueType + ") value;");
+            } else {
+                error(field, "@QueryBean 프로퍼티는 setter 나 private, final 이 아닌 필드가 필요합니다.");
+                return;
+            }
+            names.add(name);
+        }
+
+        String packageName = ((PackageElement) type.getEnclosingElement()).getQualifiedName().toString();
+        String dtoName = type.getSimpleName().toString();
+        String beanName = dtoName + "Bean";
+
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler()
+                .createSourceFile(packageName + "." + beanName, type).openWriter())) {
+            out.println("package " + packageName + ";");
+            out.println();
+            out.println("/**");
+            out.println(" * " + dtoName + " 빈 프로젝션 (@QueryBean 으로 생성됨, 직접 수정하지 말 것)");
+            out.println(" */");
+            out.println("@javax.annotation.processing.Generated(\"" + getClass().getName() + "\")");
+            out.println("public class " + beanName + " extends " + BASE_CLASS + "<" + dtoName + "> {");
+            out.println();
+            out.println("    private static final long serialVersionUID = 1L;");
+            out.println();
+            out.println("    public static " + beanName + " of(com.querydsl.core.types.Expression<?>... args) {");
+            out.println("        return new " + beanName + "(args);");
+            out.println("    }");
+            out.println();
+            out.println("    public " + beanName + "(com.querydsl.core.types.Expression<?>... args) {");
+            out.println("        super(" + dtoName + ".class, args);");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    protected int propertyIndex(String property) {");
+            out.println("        switch (property) {");
+            for (int i = 0; i < names.size(); i++) {
+                out.println("            case \"" + names.get(i) + "\": return " + i + ";");
+            }
+            out.println("            default: return -1;");
+            out.println("        }");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + dtoName + " newInstance(Object... values) {");
+            out.println("        " + dtoName + " bean = new " + dtoName + "();");
+            out.println("        for (int i = 0; i < values.length; i++) {");
+            out.println("            Object value = values[i];");
+            out.println("            if (value == null) {");
+            out.println("                continue;");
+            out.println("            }");
+            out.println("            switch (properties[i]) {");
+            for (int i = 0; i < assignments.size(); i++) {
+                out.println("                case " + i + ": " + assignments.get(i) + " break;");
+            }
+            out.println("            }");
+            out.println("        }");
+            out.println("        return bean;");
+            out.println("    }");
+            out.println("}");
+        } catch (IOException e) {
+            error(type, "@QueryBean 클래스 생성 실패: " + e.getMessage());
+        }
+    }
+
+    private boolean hasNoArgsConstructor(TypeElement type) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return hasAnnotation(type, "lombok.NoArgsConstructor");
+    }
+
+    private boolean hasSetter(TypeElement type, VariableElement field) {
+        String setter = "set" + capitalize(field.getSimpleName().toString());
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            if (method.getSimpleName().contentEquals(setter)
+                    && method.getParameters().size() == 1
+                    && !method.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return !field.getModifiers().contains(Modifier.FINAL)
+                && (hasAnnotation(type, "lombok.Data") || hasAnnotation(type, "lombok.Setter") || hasAnnotation(field, "lombok.Setter"));
+    }
+
+    private String boxed(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName().toString();
+        }
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private static boolean hasAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -17,8 +17,10 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.Commit;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberDtoBean;
 import study.querydsl.dto.QMemberDto;
 import study.querydsl.dto.UserDto;
+import study.querydsl.dto.UserDtoBean;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.Team;
@@ -214,6 +216,40 @@ public class QuerydslMiddleTest {
         }
     }
 
+    /**
+     * @QueryBean 빈 프로젝션 (MemberDtoBean, UserDtoBean 은 컴파일 시점에 생성됨)
+     * 프로퍼티 이름(별칭)으로 매칭하는 방식은 Projections.bean, fields 와 같지만 리플렉션 없이 setter 를 직접 호출한다.
+     * 매칭되는 프로퍼티가 없으면 조용히 null 이 되는 대신 바로 예외가 발생한다.
+     */
+    @Test
+    public void findDtoByQueryBean() {
+        List<MemberDto> result = queryFactory
+                .select(MemberDtoBean.of(
+                        member.username,
+                        member.age))
+                .from(member)
+                .where(member.username.eq("member1"))
+                .fetch();
+
+        assertThat(result).contains(new MemberDto("member1", 10));
+    }
+
+    @Test
+    public void findUserDtoByQueryBean() {
+        List<UserDto> result = queryFactory
+                .select(UserDtoBean.of(
+                        member.username.as("name"),
+                        ExpressionUtils.as(member.age, "age")))
+                .from(member)
+                .where(member.username.eq("member1"))
+                .fetch();
+
+        assertThat(result).contains(new UserDto("member1", 10));
+
+        assertThatThrownBy(() -> UserDtoBean.of(member.username, member.age))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
     /**
      * 생성자 사용
      * 주의 할 점: constructor를 사용하면 MemberDto의 생성자의 타입과 memeber 객체에 있는 필드 타입을 맞춰야 한다.
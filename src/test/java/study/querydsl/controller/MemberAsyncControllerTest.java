@@ -0,0 +1,50 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 비동기 검색은 별도 스레드에서 커밋된 데이터를 읽으므로 @Transactional 을 쓰지 않는다.
+ */
+@SpringBootTest(properties = "member.async.enabled=true")
+@AutoConfigureMockMvc
+class MemberAsyncControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    public void sameResponseAsBlockingSearch() throws Exception {
+        String blocking = mockMvc.perform(get("/v3/members").param("size", "5"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        MvcResult started = mockMvc.perform(get("/async/v3/members").param("size", "5"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String async = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(async).isEqualTo(blocking);
+    }
+
+    @Test
+    public void serviceUnavailableWhenBudgetIsSpent() throws Exception {
+        MvcResult started = mockMvc.perform(get("/async/v1/members").header("X-Request-Timeout", "0"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isServiceUnavailable());
+    }
+}
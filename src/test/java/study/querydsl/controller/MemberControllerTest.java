@@ -0,0 +1,110 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MemberControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberExportService memberExportService;
+
+    @Test
+    public void sliceSizeOutOfRange() throws Exception {
+        mockMvc.perform(get("/v4/members").param("size", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/v4/members").param("size", "-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/v4/members").param("size", String.valueOf(MemberController.MAX_SLICE_SIZE + 1)))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/v4/members").param("size", "1"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/v4/members").param("size", String.valueOf(MemberController.MAX_SLICE_SIZE)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @Transactional
+    public void exportNdjson() throws Exception {
+        Team team = new Team("exportTeam");
+        em.persist(team);
+        em.persist(new Member("exportMember1", 10, team));
+        em.persist(new Member("exportMember2", 20, team));
+        em.flush();
+
+        MvcResult result = mockMvc.perform(get("/members/export").param("teamName", "exportTeam"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andReturn();
+
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertThat(lines).hasSize(2);
+        ObjectMapper objectMapper = new ObjectMapper();
+        assertThat(lines).extracting(line -> objectMapper.readTree(line).get("username").asText())
+                .containsExactlyInAnyOrder("exportMember1", "exportMember2");
+    }
+
+    @Test
+    public void exportEmptyResult() throws Exception {
+        mockMvc.perform(get("/members/export").param("username", "noSuchMember"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andExpect(content().string(""));
+    }
+
+    /**
+     * 한 건마다 flush 하지 않고 마지막(또는 FLUSH_INTERVAL 건마다)에만 내보낸다.
+     */
+    @Test
+    @Transactional
+    public void exportFlushesOnlyAtInterval() throws Exception {
+        Team team = new Team("exportTeam");
+        em.persist(team);
+        for (int i = 0; i < 3; i++) {
+            em.persist(new Member("exportMember" + i, i, team));
+        }
+        em.flush();
+
+        AtomicInteger flushes = new AtomicInteger();
+        OutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                flushes.incrementAndGet();
+            }
+        };
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("exportTeam");
+
+        assertThat(memberExportService.export(condition, out)).isEqualTo(3);
+        //마지막 generator.flush() 와 generator close 때 한 번씩 (건수와 상관없음)
+        assertThat(flushes.get()).isEqualTo(2);
+    }
+}
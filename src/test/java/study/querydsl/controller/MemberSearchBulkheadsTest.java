@@ -0,0 +1,156 @@
+package study.querydsl.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.core.convert.support.ConfigurableConversionService;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.mock.env.MockEnvironment;
+import study.querydsl.repository.support.BulkheadFullException;
+import study.querydsl.repository.support.QueryContext;
+import study.querydsl.repository.support.QueryDeadline;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemberSearchBulkheadsTest {
+
+    MockEnvironment environment = new MockEnvironment();
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    public void before() {
+        //Duration 등 스프링 부트의 설정 값 변환
+        environment.setConversionService((ConfigurableConversionService) ApplicationConversionService.getSharedInstance());
+    }
+
+    private MemberSearchBulkheads bulkheads(int connectionPoolSize, boolean concurrentCount, int countPoolSize) {
+        return new MemberSearchBulkheads(environment, meterRegistry, true, connectionPoolSize, concurrentCount, countPoolSize,
+                Duration.ofSeconds(3));
+    }
+
+    private double limit(String endpoint) {
+        return meterRegistry.get("member.search.bulkhead.limit").tag("endpoint", endpoint).gauge().value();
+    }
+
+    /**
+     * 카운트 쿼리를 별도 커넥션에서 실행하면 그 풀 크기만큼 전체 limit 에서 뺀다.
+     */
+    @Test
+    public void globalLimitFromConnectionPool() {
+        assertThat(bulkheads(10, false, 4).getGlobalLimit()).isEqualTo(10);
+        assertThat(bulkheads(10, true, 4).getGlobalLimit()).isEqualTo(6);
+        assertThat(bulkheads(4, true, 4).getGlobalLimit()).isEqualTo(1);
+    }
+
+    /**
+     * 엔드포인트마다 자리가 남아 있어도 전체 limit 을 넘으면 거절한다.
+     */
+    @Test
+    public void globalLimitIsSharedByEndpoints() throws Exception {
+        environment.setProperty("member.bulkhead.max-queue-wait", "50ms");
+        MemberSearchBulkheads bulkheads = bulkheads(2, false, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(2);
+        CompletableFuture<String> v1 = CompletableFuture.supplyAsync(() -> bulkheads.execute("v1", () -> hold(started, release)));
+        CompletableFuture<String> v2 = CompletableFuture.supplyAsync(() -> bulkheads.execute("v2", () -> hold(started, release)));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> bulkheads.execute("v3", () -> "v3"))
+                .isInstanceOf(BulkheadFullException.class);
+
+        release.countDown();
+        assertThat(v1.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+        assertThat(v2.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+        assertThat(bulkheads.execute("v3", () -> "v3")).isEqualTo("v3");
+    }
+
+    /**
+     * 엔드포인트 limit 은 설정해도 전체 limit 을 넘지 않는다.
+     */
+    @Test
+    public void endpointLimitIsCappedByGlobalLimit() {
+        environment.setProperty("member.bulkhead.v1.max-limit", "100");
+        environment.setProperty("member.bulkhead.v1.initial-limit", "100");
+        MemberSearchBulkheads bulkheads = bulkheads(3, false, 0);
+
+        bulkheads.execute("v1", () -> "v1");
+        bulkheads.execute("v2", () -> "v2");
+
+        assertThat(limit("v1")).isLessThanOrEqualTo(3);
+        assertThat(limit("v2")).isLessThanOrEqualTo(3);
+        assertThat(limit("all")).isEqualTo(3);
+    }
+
+    /**
+     * 큐 대기 시간은 요청의 남은 시간 예산까지 (자리가 나면 예산 안에서 실행)
+     */
+    @Test
+    public void queueWaitFollowsRequestDeadline() throws Exception {
+        MemberSearchBulkheads bulkheads = bulkheads(1, false, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> bulkheads.execute("v1", () -> hold(started, release)));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        //예산이 짧으면 그만큼만 기다리고 거절
+        long start = System.nanoTime();
+        QueryContext.Scope scope = QueryDeadline.open(Duration.ofMillis(100));
+        try {
+            assertThatThrownBy(() -> bulkheads.execute("v1", () -> "v1"))
+                    .isInstanceOf(BulkheadFullException.class);
+        } finally {
+            scope.close();
+        }
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+
+        //예산 안에 자리가 나면 실행
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> {
+            QueryContext.Scope deadline = QueryDeadline.open(Duration.ofSeconds(2));
+            try {
+                return bulkheads.execute("v1", () -> "queued");
+            } finally {
+                deadline.close();
+            }
+        });
+        Thread.sleep(200);
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("queued");
+    }
+
+    /**
+     * 과부하로 limit 이 줄어도 전체 limit 의 절반 아래로는 내려가지 않는다.
+     */
+    @Test
+    public void endpointLimitFloorFromConnectionPool() {
+        MemberSearchBulkheads bulkheads = bulkheads(10, false, 0);
+        for (int i = 0; i < 100; i++) {
+            try {
+                bulkheads.execute("v1", () -> {
+                    throw new QueryTimeoutException("timeout");
+                });
+            } catch (QueryTimeoutException e) {
+                //과부하 신호
+            }
+        }
+        assertThat(limit("v1")).isEqualTo(5);
+    }
+
+    private static String hold(CountDownLatch started, CountDownLatch release) {
+        started.countDown();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "done";
+    }
+}
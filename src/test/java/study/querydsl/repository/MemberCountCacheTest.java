@@ -0,0 +1,51 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 트랜잭션 밖(CommittedReads)에서 캐시만 검증한다.
+ */
+class MemberCountCacheTest {
+
+    MemberCountCache countCache = new MemberCountCache(Duration.ofMinutes(1), 100);
+
+    private MemberSearchCondition condition() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        return condition;
+    }
+
+    /**
+     * 카운트 쿼리가 도는 사이에 무효화되면 변경 전 카운트일 수 있으므로 캐시에 넣지 않는다.
+     */
+    @Test
+    public void putSkippedWhenInvalidatedDuringCount() {
+        long generation = countCache.generation();
+        countCache.invalidateAll();
+        countCache.put(condition(), generation, 10);
+
+        assertThat(countCache.getIfPresent(condition())).isEmpty();
+
+        countCache.put(condition(), countCache.generation(), 11);
+        assertThat(countCache.getIfPresent(condition())).hasValue(11);
+    }
+
+    @Test
+    public void getNotCachedWhenInvalidatedDuringCount() {
+        long count = countCache.get(condition(), () -> {
+            countCache.invalidateAll();
+            return 10;
+        });
+
+        assertThat(count).isEqualTo(10);
+        assertThat(countCache.getIfPresent(condition())).isEmpty();
+
+        assertThat(countCache.get(condition(), () -> 11)).isEqualTo(11);
+        assertThat(countCache.get(condition(), () -> 12)).isEqualTo(11);
+    }
+}
@@ -1,10 +1,12 @@
 package study.querydsl.repository;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
+import org.hibernate.Session;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
@@ -12,7 +14,9 @@ import study.querydsl.entity.Team;
 
 import javax.persistence.EntityManager;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -26,6 +30,9 @@ class MemberJpaRepositoryTest {
 
     @Autowired MemberJpaRepository memberJpaRepository;
 
+    @Autowired
+    MeterRegistry meterRegistry;
+
     @Test
     public void basicTest() {
         Member member = new Member("member1", 10);
@@ -49,6 +56,26 @@ class MemberJpaRepositoryTest {
         assertThat(result2).containsExactly(member);
     }
 
+    @Test
+    public void saveAll() {
+        Team team = new Team("saveAllTeam");
+        em.persist(team);
+
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            members.add(new Member("saveAll" + i, i, team));
+        }
+        memberJpaRepository.saveAll(members);
+
+        //배치 단위로 flush, clear 되어서 영속성 컨텍스트에 남아있지 않음
+        assertThat(members).allMatch(member -> member.getId() != null && !em.contains(member));
+        assertThat(em.contains(team)).isFalse();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("saveAllTeam");
+        assertThat(memberJpaRepository.searchByBuilder(condition)).hasSize(250);
+    }
+
     @Test
     public void searchTest() {
         Team teamA = new Team("teamA");
@@ -82,4 +109,72 @@ class MemberJpaRepositoryTest {
         assertThat(result).extracting("username").containsExactly("member4");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void searchStream() {
+        Team teamA = new Team("streamTeam");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("streamTeam");
+
+        try (Stream<MemberTeamDto> stream = memberJpaRepository.searchStream(condition)) {
+            assertThat(stream).extracting("username").containsExactlyInAnyOrder("member1", "member2");
+        }
+    }
+
+    /**
+     * 조건 모양 16가지 모두 템플릿 조회 결과가 BooleanBuilder 동적 쿼리와 같아야 한다.
+     */
+    @Test
+    public void searchTemplateAllShapes() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        for (int shape = 0; shape < MemberSearchCondition.SHAPE_COUNT; shape++) {
+            MemberSearchCondition condition = new MemberSearchCondition();
+            if ((shape & MemberSearchCondition.USERNAME) != 0) condition.setUsername("member3");
+            if ((shape & MemberSearchCondition.TEAM_NAME) != 0) condition.setTeamName("teamB");
+            if ((shape & MemberSearchCondition.AGE_GOE) != 0) condition.setAgeGoe(25);
+            if ((shape & MemberSearchCondition.AGE_LOE) != 0) condition.setAgeLoe(35);
+
+            assertThat(condition.shape()).isEqualTo(shape);
+            assertThat(memberJpaRepository.search(condition))
+                    .usingRecursiveFieldByFieldElementComparator()
+                    .containsExactlyInAnyOrderElementsOf(memberJpaRepository.searchByBuilder(condition));
+        }
+
+        double hits = meterRegistry.get("member.search.template").tag("result", "hit").counter().count();
+        memberJpaRepository.search(new MemberSearchCondition());
+        assertThat(meterRegistry.get("member.search.template").tag("result", "hit").counter().count())
+                .isEqualTo(hits + 1);
+    }
+
+    @Test
+    public void findMemberReadOnly() {
+        Team team = new Team("readOnlyTeam");
+        em.persist(team);
+        em.persist(new Member("readOnlyMember", 10, team));
+        em.flush();
+        em.clear();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("readOnlyMember");
+        Member found = memberJpaRepository.findMember(condition).get(0);
+
+        //쓰기 트랜잭션(테스트) 안에서도 조회 전용 엔티티로 로딩되므로 변경 감지 대상이 아니다.
+        assertThat(em.unwrap(Session.class).isReadOnly(found)).isTrue();
+        found.setAge(99);
+        em.flush();
+        em.clear();
+        assertThat(memberJpaRepository.findById(found.getId()).get().getAge()).isEqualTo(10);
+    }
+
+}
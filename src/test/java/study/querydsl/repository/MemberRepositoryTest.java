@@ -1,19 +1,28 @@
 package study.querydsl.repository;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.Team;
+import study.querydsl.repository.support.BulkUpdateExecutor;
+import study.querydsl.repository.support.EstimatedPage;
 
 import javax.persistence.EntityManager;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -26,6 +35,22 @@ class MemberRepositoryTest {
 
     @Autowired MemberRepository memberRepository;
 
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    BulkUpdateExecutor bulkUpdateExecutor;
+
+    /**
+     * 다른 테스트 클래스가 @Commit 으로 남긴 회원, 팀을 지우고 시작한다. (스프링 컨텍스트와 메모리 DB 를 함께 쓰는 경우)
+     * 테스트 트랜잭션 안에서 지우므로 테스트가 끝나면 롤백된다.
+     */
+    @BeforeEach
+    public void before() {
+        em.createQuery("delete from Member").executeUpdate();
+        em.createQuery("delete from Team").executeUpdate();
+    }
+
     @Test
     public void basicTest() {
         Member member = new Member("member1", 10);
@@ -94,6 +119,191 @@ class MemberRepositoryTest {
         assertThat(result.getContent()).extracting("username").containsExactly("member1", "member2", "member3");
     }
 
+    @Test
+    public void searchPageDeferredJoin() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        Member member1 = new Member("member1", 10, teamA);
+        Member member2 = new Member("member2", 20, teamA);
+
+        Member member3 = new Member("member3", 30, teamB);
+        Member member4 = new Member("member4", 40, teamB);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        PageRequest pageRequest = PageRequest.of(1, 2);
+
+        Page<MemberTeamDto> result = memberRepository.searchPageDeferredJoin(condition, pageRequest);
+
+        assertThat(result.getTotalElements()).isEqualTo(4);
+        assertThat(result.getContent()).extracting("username").containsExactly("member3", "member4");
+        assertThat(result.getContent()).extracting("teamName").containsExactly("teamB", "teamB");
+    }
+
+    /**
+     * 카운트 캐시는 회원이 추가되면 무효화되어야 한다.
+     */
+    @Test
+    public void countCacheInvalidatedOnMemberWrite() {
+        Team team = new Team("countCacheTeam");
+        em.persist(team);
+        em.persist(new Member("member1", 10, team));
+        em.persist(new Member("member2", 20, team));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("countCacheTeam");
+        PageRequest pageRequest = PageRequest.of(0, 1);
+
+        assertThat(memberRepository.searchPageComplex(condition, pageRequest).getTotalElements()).isEqualTo(2);
+        assertThat(memberRepository.searchPageSimple(condition, pageRequest).getTotalElements()).isEqualTo(2);
+
+        em.persist(new Member("member3", 30, team));
+
+        assertThat(memberRepository.searchPageComplex(condition, pageRequest).getTotalElements()).isEqualTo(3);
+        assertThat(memberRepository.searchPageSimple(condition, pageRequest).getTotalElements()).isEqualTo(3);
+    }
+
+    /**
+     * 쓰기 트랜잭션에서 플러시했지만 커밋하지 않은 회원이 들어간 카운트는 캐시되면 안 된다. (다른 트랜잭션이 보게 됨)
+     */
+    @Test
+    public void countCacheSkipsReadWriteTransaction() {
+        em.persist(new Member("uncommittedMember", 10));
+        em.flush();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("uncommittedMember");
+        PageRequest pageRequest = PageRequest.of(0, 10);
+        assertThat(memberRepository.searchPageSimple(condition, pageRequest).getTotalElements()).isEqualTo(1);
+
+        TransactionTemplate otherTransaction = new TransactionTemplate(transactionManager);
+        otherTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        otherTransaction.setReadOnly(true);
+        Long total = otherTransaction.execute(status ->
+                memberRepository.searchPageSimple(condition, pageRequest).getTotalElements());
+        assertThat(total).isZero();
+    }
+
+    @Test
+    public void searchPageApproximate() {
+        Team team = new Team("approximateTeam");
+        em.persist(team);
+        em.persist(new Member("member1", 10, team));
+        em.persist(new Member("member2", 20, team));
+        em.persist(new Member("member3", 30, team));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("approximateTeam");
+
+        Page<MemberTeamDto> result = memberRepository.searchPageApproximate(condition, PageRequest.of(0, 2));
+
+        //approximate-limit 보다 결과가 적으면 정확한 카운트
+        assertThat(result).isInstanceOf(EstimatedPage.class);
+        assertThat(((EstimatedPage<MemberTeamDto>) result).isTotalEstimated()).isFalse();
+        assertThat(result.getTotalElements()).isEqualTo(3);
+    }
+
+    @Test
+    public void bulkAddAge() {
+        Team bulkTeam = new Team("bulkTeam");
+        Team otherTeam = new Team("bulkOtherTeam");
+        em.persist(bulkTeam);
+        em.persist(otherTeam);
+        Member member1 = new Member("member1", 10, bulkTeam);
+        Member member2 = new Member("member2", 20, bulkTeam);
+        Member member3 = new Member("member3", 30, bulkTeam);
+        Member member4 = new Member("member4", 40, otherTeam);
+        memberRepository.saveAll(List.of(member1, member2, member3, member4));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("bulkTeam");
+        condition.setAgeGoe(15);
+        List<Long> ids = memberRepository.bulkAddAge(condition, 1);
+
+        assertThat(ids).containsExactly(member2.getId(), member3.getId());
+        //수정된 회원만 영속성 컨텍스트에서 빠지고, 나머지는 그대로 남아있다.
+        assertThat(em.contains(member2)).isFalse();
+        assertThat(em.contains(member3)).isFalse();
+        assertThat(em.contains(member1)).isTrue();
+        assertThat(em.contains(member4)).isTrue();
+        assertThat(em.find(Member.class, member2.getId()).getAge()).isEqualTo(21);
+        assertThat(em.find(Member.class, member3.getId()).getAge()).isEqualTo(31);
+    }
+
+    @Test
+    public void bulkUpdateAges() {
+        Member member1 = new Member("member1", 10);
+        Member member2 = new Member("member2", 20);
+        Member member3 = new Member("member3", 30);
+        memberRepository.saveAll(List.of(member1, member2, member3));
+
+        Map<Long, Integer> agesById = new HashMap<>();
+        agesById.put(member1.getId(), 11);
+        agesById.put(member2.getId(), 22);
+        agesById.put(-1L, 99); //없는 회원
+        long updated = memberRepository.bulkUpdateAges(agesById);
+
+        assertThat(updated).isEqualTo(2);
+        assertThat(em.contains(member1)).isFalse();
+        assertThat(em.contains(member3)).isTrue();
+        assertThat(em.find(Member.class, member1.getId()).getAge()).isEqualTo(11);
+        assertThat(em.find(Member.class, member2.getId()).getAge()).isEqualTo(22);
+        assertThat(member3.getAge()).isEqualTo(30);
+    }
+
+    @Test
+    public void bulkUpdateValuesWithNull() {
+        Member member1 = new Member("member1", 10);
+        Member member2 = new Member("member2", 20);
+        memberRepository.saveAll(List.of(member1, member2));
+
+        Map<Long, String> usernamesById = new HashMap<>();
+        usernamesById.put(member1.getId(), "renamed");
+        usernamesById.put(member2.getId(), null);
+        long updated = bulkUpdateExecutor.updateValues(QMember.member, QMember.member.id, QMember.member.username, usernamesById);
+
+        assertThat(updated).isEqualTo(2);
+        assertThat(em.find(Member.class, member1.getId()).getUsername()).isEqualTo("renamed");
+        assertThat(em.find(Member.class, member2.getId()).getUsername()).isNull();
+    }
+
+    @Test
+    public void searchSlice() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        Member member1 = new Member("member1", 10, teamA);
+        Member member2 = new Member("member2", 20, teamA);
+
+        Member member3 = new Member("member3", 30, teamB);
+        Member member4 = new Member("member4", 40, teamB);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        Slice<MemberTeamDto> first = memberRepository.searchSlice(condition, null, 3);
+
+        assertThat(first.hasNext()).isTrue();
+        assertThat(first.getContent()).extracting("username").containsExactly("member1", "member2", "member3");
+
+        Long cursor = first.getContent().get(2).getMemberId();
+        Slice<MemberTeamDto> second = memberRepository.searchSlice(condition, cursor, 3);
+
+        assertThat(second.hasNext()).isFalse();
+        assertThat(second.getContent()).extracting("username").containsExactly("member4");
+    }
+
     /**
      * 스프링 데이터 JPA가 제공하는 Querydsl 기능
      * 여기서 소개하는 기능은 제약이 커서 복잡한 실무 환경에서 사용하기에는 많이 부족하다. 그래도 스프링
@@ -0,0 +1,149 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 캐시는 커밋된 데이터만 담아야 하므로 테스트 트랜잭션(롤백) 없이 실제로 커밋하고 정리한다.
+ */
+@SpringBootTest
+class MemberSearchResultCacheTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberQueryRepository memberQueryRepository;
+
+    @Autowired
+    MemberSearchResultCache resultCache;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+    TransactionTemplate otherTx;
+
+    Team team;
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        otherTx = new TransactionTemplate(transactionManager);
+        otherTx.setReadOnly(true);
+        otherTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        team = tx.execute(status -> {
+            Team team = new Team("resultCacheTeam");
+            em.persist(team);
+            em.persist(new Member("member1", 10, team));
+            return team;
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.team.id = :teamId").setParameter("teamId", team.getId()).executeUpdate();
+            em.createQuery("delete from Team t where t.id = :teamId").setParameter("teamId", team.getId()).executeUpdate();
+        });
+    }
+
+    private double hits() {
+        return meterRegistry.get("cache.gets").tag("cache", "member.search").tag("result", "hit").functionCounter().count();
+    }
+
+    private MemberSearchCondition condition() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("resultCacheTeam");
+        return condition;
+    }
+
+    @Test
+    public void cacheHitAndEntityInvalidation() {
+        List<MemberTeamDto> first = memberQueryRepository.search(condition());
+        double hits = hits();
+        List<MemberTeamDto> second = memberQueryRepository.search(condition());
+
+        assertThat(second).isSameAs(first);
+        assertThat(hits()).isEqualTo(hits + 1);
+        assertThat(meterRegistry.get("member.search.cache.weight").gauge().value()).isPositive();
+
+        //회원 추가 (커밋하면 무효화)
+        tx.executeWithoutResult(status -> em.persist(new Member("member2", 20, em.find(Team.class, team.getId()))));
+        assertThat(memberQueryRepository.search(condition())).extracting("username")
+                .containsExactlyInAnyOrder("member1", "member2");
+    }
+
+    @Test
+    public void bulkUpdateInvalidation() {
+        assertThat(memberQueryRepository.search(condition())).extracting("age").containsExactly(10);
+
+        tx.executeWithoutResult(status -> new JPAQueryFactory(em)
+                .update(member)
+                .set(member.age, member.age.add(1))
+                .where(member.team.id.eq(team.getId()))
+                .execute());
+
+        assertThat(memberQueryRepository.search(condition())).extracting("age").containsExactly(11);
+    }
+
+    /**
+     * 쓰기 트랜잭션에서 플러시했지만 커밋하지 않은 회원은 캐시에 들어가지 않는다.
+     * 자기 트랜잭션에서는 보이고, 다른 트랜잭션에서는 보이지 않아야 한다.
+     */
+    @Test
+    public void uncommittedResultIsNotCached() {
+        tx.executeWithoutResult(status -> {
+            em.persist(new Member("uncommitted", 20, em.find(Team.class, team.getId())));
+            em.flush();
+
+            assertThat(memberQueryRepository.search(condition())).extracting("username")
+                    .containsExactlyInAnyOrder("member1", "uncommitted");
+
+            List<MemberTeamDto> other = otherTx.execute(s -> memberQueryRepository.search(condition()));
+            assertThat(other).extracting("username").containsExactly("member1");
+
+            status.setRollbackOnly();
+        });
+
+        assertThat(memberQueryRepository.search(condition())).extracting("username").containsExactly("member1");
+    }
+
+    /**
+     * 검색하는 사이에 커밋된 변경으로 무효화되면 변경 전 결과를 캐시에 넣지 않는다.
+     */
+    @Test
+    public void resultNotCachedWhenInvalidatedDuringSearch() {
+        resultCache.invalidateAll();
+        resultCache.get(condition(), () -> {
+            List<MemberTeamDto> result = List.of(new MemberTeamDto(1L, "stale", 10, team.getId(), "resultCacheTeam"));
+            resultCache.invalidateAll();
+            return result;
+        });
+
+        assertThat(resultCache.get(condition(), () -> List.of(new MemberTeamDto(1L, "fresh", 10, team.getId(), "resultCacheTeam"))))
+                .extracting("username").containsExactly("fresh");
+    }
+}
@@ -0,0 +1,88 @@
+package study.querydsl.repository;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.QueryInstrumentation;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * 트랜잭션 없이 호출해서 리포지토리가 여는 읽기 전용 트랜잭션을 확인한다.
+ */
+@SpringBootTest
+class MemberTestRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberTestRepository memberTestRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @SpyBean
+    QueryInstrumentation instrumentation;
+
+    @Test
+    public void applyPaginationReadOnly() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Team team = new Team("memberTestRepositoryTeam");
+        tx.executeWithoutResult(status -> {
+            em.persist(team);
+            em.persist(new Member("memberTestRepositoryMember", 10, team));
+        });
+
+        //리포지토리 안에서 쿼리가 실행되는 시점의 트랜잭션, 세션 상태를 기록한다.
+        List<Boolean> transactionReadOnly = new ArrayList<>();
+        List<FlushMode> flushModes = new ArrayList<>();
+        List<Boolean> defaultReadOnly = new ArrayList<>();
+        doAnswer(invocation -> {
+            transactionReadOnly.add(TransactionSynchronizationManager.isActualTransactionActive()
+                    && TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+            Session session = em.unwrap(Session.class);
+            flushModes.add(session.getHibernateFlushMode());
+            defaultReadOnly.add(session.isDefaultReadOnly());
+            return invocation.callRealMethod();
+        }).when(instrumentation).record(any(), anyLong(), anyLong(), anyLong(), anyLong());
+
+        try {
+            MemberSearchCondition condition = new MemberSearchCondition();
+            condition.setTeamName("memberTestRepositoryTeam");
+
+            //바깥 트랜잭션 없이 호출
+            assertThat(TransactionSynchronizationManager.isActualTransactionActive()).isFalse();
+            Page<Member> page = memberTestRepository.applyPagiantion(condition, PageRequest.of(0, 10));
+
+            assertThat(page.getContent()).extracting("username").containsExactly("memberTestRepositoryMember");
+            //조회 중에는 읽기 전용 트랜잭션, FlushMode.MANUAL, 세션 기본 읽기 전용
+            assertThat(transactionReadOnly).isNotEmpty().containsOnly(true);
+            assertThat(flushModes).containsOnly(FlushMode.MANUAL);
+            assertThat(defaultReadOnly).containsOnly(true);
+        } finally {
+            tx.executeWithoutResult(status -> {
+                em.createQuery("delete from Member m where m.team.id = :teamId").setParameter("teamId", team.getId()).executeUpdate();
+                em.createQuery("delete from Team t where t.id = :teamId").setParameter("teamId", team.getId()).executeUpdate();
+            });
+        }
+    }
+}
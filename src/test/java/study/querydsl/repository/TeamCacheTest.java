@@ -0,0 +1,120 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 캐시는 커밋된 데이터만 담아야 하므로 테스트 트랜잭션(롤백) 없이 실제로 커밋하고 정리한다.
+ */
+@SpringBootTest
+class TeamCacheTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TeamCache teamCache;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+    TransactionTemplate readOnlyTx;
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        readOnlyTx = new TransactionTemplate(transactionManager);
+        readOnlyTx.setReadOnly(true);
+        readOnlyTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> em.createQuery("delete from Team t where t.name like 'teamCache%'").executeUpdate());
+    }
+
+    private double hits(String cache) {
+        return meterRegistry.get("cache.gets").tag("cache", cache).tag("result", "hit").functionCounter().count();
+    }
+
+    private Team save(String name) {
+        return tx.execute(status -> {
+            Team team = new Team(name);
+            em.persist(team);
+            return team;
+        });
+    }
+
+    @Test
+    public void findIdsByName() {
+        Team teamA = save("teamCacheA");
+
+        assertThat(teamCache.findIdsByName("teamCacheA")).containsExactly(teamA.getId());
+
+        double hits = hits("team.ids-by-name");
+        teamCache.findIdsByName("teamCacheA");
+        readOnlyTx.execute(status -> teamCache.findIdsByName("teamCacheA"));
+        assertThat(hits("team.ids-by-name")).isEqualTo(hits + 2);
+
+        //같은 이름의 팀이 추가되면 무효화
+        Team teamA2 = save("teamCacheA");
+        assertThat(teamCache.findIdsByName("teamCacheA")).containsExactly(teamA.getId(), teamA2.getId());
+    }
+
+    @Test
+    public void findNameById() {
+        Team team = save("teamCacheB");
+
+        assertThat(teamCache.findNameById(team.getId())).isEqualTo("teamCacheB");
+        assertThat(teamCache.findNameById(null)).isNull();
+
+        tx.executeWithoutResult(status -> em.find(Team.class, team.getId()).setName("teamCacheC"));
+        assertThat(teamCache.findNameById(team.getId())).isEqualTo("teamCacheC");
+    }
+
+    /**
+     * 쓰기 트랜잭션에서 플러시했지만 커밋하지 않은 팀은 캐시에 들어가지 않는다.
+     * 자기 트랜잭션에서는 보이고, 다른 트랜잭션에서는 보이지 않아야 한다.
+     */
+    @Test
+    public void uncommittedTeamIsNotCached() {
+        Team committed = save("teamCacheD");
+
+        tx.executeWithoutResult(status -> {
+            Team uncommitted = new Team("teamCacheD");
+            em.persist(uncommitted);
+            em.find(Team.class, committed.getId()).setName("teamCacheE");
+            em.flush();
+
+            assertThat(teamCache.findIdsByName("teamCacheD")).containsExactly(uncommitted.getId());
+            assertThat(teamCache.findNameById(committed.getId())).isEqualTo("teamCacheE");
+
+            List<Long> otherIds = readOnlyTx.execute(other -> teamCache.findIdsByName("teamCacheD"));
+            String otherName = readOnlyTx.execute(other -> teamCache.findNameById(committed.getId()));
+            assertThat(otherIds).containsExactly(committed.getId());
+            assertThat(otherName).isEqualTo("teamCacheD");
+
+            status.setRollbackOnly();
+        });
+
+        assertThat(teamCache.findIdsByName("teamCacheD")).containsExactly(committed.getId());
+        assertThat(teamCache.findNameById(committed.getId())).isEqualTo("teamCacheD");
+    }
+}
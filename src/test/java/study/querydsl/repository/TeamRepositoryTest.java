@@ -0,0 +1,67 @@
+package study.querydsl.repository;
+
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class TeamRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    private List<Long> saveTeams() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Team team = new Team("teamRepositoryTeam" + i);
+            em.persist(team);
+            for (int j = 0; j < 2; j++) {
+                em.persist(new Member("teamRepositoryMember" + i + "-" + j, j, team));
+            }
+            ids.add(team.getId());
+        }
+        em.flush();
+        em.clear();
+        return ids;
+    }
+
+    @Test
+    public void findDistinctByIdIn() {
+        List<Long> ids = saveTeams();
+
+        List<Team> teams = teamRepository.findDistinctByIdIn(ids);
+
+        assertThat(teams).hasSize(3);
+        for (Team team : teams) {
+            assertThat(Hibernate.isInitialized(team.getMembers())).isTrue();
+            assertThat(team.getMembers()).hasSize(2);
+            team.getMembers().forEach(m -> assertThat(m.getTeam()).isSameAs(team));
+        }
+    }
+
+    @Test
+    public void batchFetchMembers() {
+        List<Long> ids = saveTeams();
+
+        List<Team> teams = teamRepository.findAllById(ids);
+        assertThat(teams).allMatch(t -> !Hibernate.isInitialized(t.getMembers()));
+
+        //첫 번째 팀의 회원을 읽으면 나머지 팀의 회원도 IN 쿼리로 함께 로딩 (default_batch_fetch_size)
+        assertThat(teams.get(0).getMembers()).hasSize(2);
+        assertThat(teams).allMatch(t -> Hibernate.isInitialized(t.getMembers()));
+    }
+}
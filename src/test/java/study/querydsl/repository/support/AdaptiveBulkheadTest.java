@@ -0,0 +1,118 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveBulkheadTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private AdaptiveBulkhead bulkhead(int initialLimit, int maxLimit, int maxQueue) {
+        return new AdaptiveBulkhead("test.bulkhead", Tags.of("endpoint", "test"), initialLimit, 1, maxLimit, maxQueue, meterRegistry);
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get("test.bulkhead.rejected").tag("reason", reason).counter().count();
+    }
+
+    @Test
+    public void rejectImmediatelyWhenQueueIsFull() {
+        AdaptiveBulkhead bulkhead = bulkhead(2, 2, 0);
+        bulkhead.acquire(0);
+        bulkhead.acquire(0);
+
+        assertThatThrownBy(() -> bulkhead.acquire(TimeUnit.SECONDS.toNanos(1)))
+                .isInstanceOf(BulkheadFullException.class);
+        assertThat(rejected("queue-full")).isEqualTo(1);
+        assertThat(meterRegistry.get("test.bulkhead.in-flight").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    public void queuedCallRunsWhenPermitIsReleased() throws Exception {
+        AdaptiveBulkhead bulkhead = bulkhead(1, 1, 1);
+        bulkhead.acquire(0);
+
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(
+                () -> bulkhead.execute(TimeUnit.SECONDS.toNanos(5), e -> false, () -> "done"));
+        while (bulkhead.getQueued() == 0) {
+            Thread.sleep(1);
+        }
+        bulkhead.release(10 * MILLIS, false);
+
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+        assertThat(bulkhead.getInFlight()).isZero();
+    }
+
+    @Test
+    public void rejectAfterMaxWait() {
+        AdaptiveBulkhead bulkhead = bulkhead(1, 1, 1);
+        bulkhead.acquire(0);
+
+        assertThatThrownBy(() -> bulkhead.acquire(20 * MILLIS))
+                .isInstanceOf(BulkheadFullException.class);
+        assertThat(rejected("timeout")).isEqualTo(1);
+        assertThat(bulkhead.getQueued()).isZero();
+    }
+
+    @Test
+    public void limitFollowsLatency() {
+        AdaptiveBulkhead bulkhead = bulkhead(4, 16, 0);
+
+        //limit 을 다 쓰는 동안 응답 시간이 그대로면 늘어난다.
+        for (int i = 0; i < 50; i++) {
+            saturate(bulkhead, 10 * MILLIS);
+        }
+        assertThat(bulkhead.getLimit()).isEqualTo(16);
+
+        //응답 시간이 평소의 몇 배가 되면 줄어든다.
+        for (int i = 0; i < 5; i++) {
+            saturate(bulkhead, 100 * MILLIS);
+        }
+        assertThat(bulkhead.getLimit()).isLessThan(10);
+
+        //느린 응답이 계속되면 새 평소 응답 시간이 되어 다시 늘어난다. (최대 maxLimit)
+        for (int i = 0; i < 100; i++) {
+            saturate(bulkhead, 100 * MILLIS);
+        }
+        assertThat(bulkhead.getLimit()).isEqualTo(16);
+    }
+
+    @Test
+    public void doNotGrowWhileUnderused() {
+        AdaptiveBulkhead bulkhead = bulkhead(4, 16, 0);
+        for (int i = 0; i < 50; i++) {
+            bulkhead.acquire(0);
+            bulkhead.release(10 * MILLIS, false);
+        }
+        assertThat(bulkhead.getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    public void droppedCallShrinksLimit() {
+        AdaptiveBulkhead bulkhead = bulkhead(10, 10, 0);
+        assertThatThrownBy(() -> bulkhead.execute(0, e -> true, () -> {
+            throw new QueryDeadlineExceededException("timeout", null);
+        })).isInstanceOf(QueryDeadlineExceededException.class);
+        assertThat(bulkhead.getLimit()).isEqualTo(9);
+    }
+
+    private static void saturate(AdaptiveBulkhead bulkhead, long rttNanos) {
+        int permits = (int) bulkhead.getLimit();
+        for (int i = 0; i < permits; i++) {
+            bulkhead.acquire(0);
+        }
+        for (int i = 0; i < permits; i++) {
+            bulkhead.release(rttNanos, false);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 범위마다 커밋하므로 테스트 트랜잭션(@Transactional) 없이 실행하고, 직접 정리한다.
+ */
+@SpringBootTest
+class ChunkedBulkExecutorTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    EntityChangeEventPublisher changeEventPublisher;
+
+    TransactionTemplate transactionTemplate;
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    public void before() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < 5; i++) {
+                em.persist(new Member("chunked" + i, i));
+            }
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        transactionTemplate.executeWithoutResult(status ->
+                em.createQuery("delete from Member m where m.username like 'chunked%'").executeUpdate());
+    }
+
+    private ChunkedBulkExecutor executor(int rowsPerSecond) {
+        return new ChunkedBulkExecutor(em, transactionManager, changeEventPublisher, meterRegistry, 2, rowsPerSecond);
+    }
+
+    @Test
+    public void updateInChunks() {
+        long updated = executor(0).update("test", member, member.id, member.username.startsWith("chunked"),
+                clause -> clause.set(member.age, member.age.add(100)));
+
+        assertThat(updated).isEqualTo(5);
+        List<Integer> ages = em.createQuery("select m.age from Member m where m.username like 'chunked%'", Integer.class)
+                .getResultList();
+        assertThat(ages).containsExactlyInAnyOrder(100, 101, 102, 103, 104);
+        //5건을 2건씩 -> 3 범위
+        assertThat(meterRegistry.get("bulk.chunked.chunk").tag("operation", "update").timer().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("bulk.chunked.rows").tag("operation", "update").counter().count()).isEqualTo(5);
+    }
+
+    @Test
+    public void deleteThrottled() {
+        long start = System.nanoTime();
+        //초당 50건 -> 5건이면 최소 100ms
+        long deleted = executor(50).delete("test", member, member.id, member.username.startsWith("chunked"));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(deleted).isEqualTo(5);
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(90);
+        Long remaining = em.createQuery("select count(m) from Member m where m.username like 'chunked%'", Long.class)
+                .getSingleResult();
+        assertThat(remaining).isZero();
+    }
+}
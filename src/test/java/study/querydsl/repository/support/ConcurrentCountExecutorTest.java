@@ -0,0 +1,173 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest
+class ConcurrentCountExecutorTest {
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    EntityManager em;
+
+    ConcurrentCountExecutor countExecutor;
+
+    @AfterEach
+    public void after() {
+        countExecutor.destroy();
+    }
+
+    private JPAQuery<Long> memberCount(EntityManager em) {
+        return new JPAQueryFactory(em)
+                .select(member.count())
+                .from(member);
+    }
+
+    @Test
+    public void countOnSeparateThread() {
+        countExecutor = new ConcurrentCountExecutor(emf, em, true, 1, 1, Duration.ofSeconds(3), false);
+
+        Thread caller = Thread.currentThread();
+        Thread[] countThread = new Thread[1];
+        LongSupplier total = countExecutor.count(countEm -> {
+            countThread[0] = Thread.currentThread();
+            return memberCount(countEm);
+        });
+
+        assertThat(total.getAsLong()).isEqualTo(memberCount(em).fetchOne());
+        assertThat(countThread[0]).isNotSameAs(caller);
+    }
+
+    /**
+     * 스레드 풀과 대기 큐가 가득 차면 호출한 스레드에서 순서대로 실행한다.
+     */
+    @Test
+    public void fallbackToSequentialWhenSaturated() throws InterruptedException {
+        countExecutor = new ConcurrentCountExecutor(emf, em, true, 1, 1, Duration.ofSeconds(3), false);
+
+        CountDownLatch release = new CountDownLatch(1);
+        Function<EntityManager, JPAQuery<Long>> blocking = countEm -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return memberCount(countEm);
+        };
+        countExecutor.count(blocking); //실행 중
+        countExecutor.count(blocking); //대기 큐
+
+        Thread caller = Thread.currentThread();
+        Thread[] countThread = new Thread[1];
+        LongSupplier total = countExecutor.count(countEm -> {
+            countThread[0] = Thread.currentThread();
+            return memberCount(countEm);
+        });
+        total.getAsLong();
+        release.countDown();
+
+        assertThat(countThread[0]).isSameAs(caller);
+    }
+
+    private Function<EntityManager, JPAQuery<Long>> blocking(CountDownLatch release, AtomicInteger calls) {
+        return countEm -> {
+            calls.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return memberCount(countEm);
+        };
+    }
+
+    /**
+     * timeout 이 지나면 비동기 카운트를 취소하고 실패한다. 같은 카운트를 다시 실행하지 않는다.
+     */
+    @Test
+    public void failWithoutRerunOnTimeout() {
+        countExecutor = new ConcurrentCountExecutor(emf, em, true, 1, 1, Duration.ofMillis(100), false);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        ConcurrentCountExecutor.PendingCount total = countExecutor.count(blocking(release, calls));
+
+        assertThatThrownBy(total::getAsLong).isInstanceOf(QueryTimeoutException.class);
+        release.countDown();
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    /**
+     * 결과를 쓰지 않고 close 하면 대기 중인 카운트 쿼리는 실행되지 않는다.
+     */
+    @Test
+    public void closeCancelsUnusedCount() {
+        countExecutor = new ConcurrentCountExecutor(emf, em, true, 1, 1, Duration.ofSeconds(3), false);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger queued = new AtomicInteger();
+
+        ConcurrentCountExecutor.PendingCount first = countExecutor.count(blocking(release, running)); //실행 중
+        ConcurrentCountExecutor.PendingCount second = countExecutor.count(blocking(release, queued)); //대기 큐
+        second.close();
+        release.countDown();
+        first.getAsLong();
+
+        assertThat(running.get()).isEqualTo(1);
+        assertThat(queued.get()).isZero();
+    }
+
+    /**
+     * 트랜잭션 없이 실행하는 카운트에 읽기 전용 표시는 복제본 라우팅을 쓸 때만 한다.
+     */
+    @Test
+    public void markReadOnlyOnlyWithReplicaRouting() {
+        for (boolean replicaRouting : new boolean[]{false, true}) {
+            countExecutor = new ConcurrentCountExecutor(emf, em, true, 1, 1, Duration.ofSeconds(3), replicaRouting);
+            boolean[] readOnly = new boolean[1];
+            countExecutor.count(countEm -> {
+                readOnly[0] = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+                return memberCount(countEm);
+            }).getAsLong();
+            countExecutor.destroy();
+
+            assertThat(readOnly[0]).isEqualTo(replicaRouting);
+        }
+    }
+
+    /**
+     * 쓰기 트랜잭션 안에서는 커밋 전 데이터를 봐야 하므로 같은 커넥션에서 순서대로 실행한다.
+     */
+    @Test
+    @Transactional
+    public void sequentialInReadWriteTransaction() {
+        countExecutor = new ConcurrentCountExecutor(emf, em, true, 1, 1, Duration.ofSeconds(3), false);
+        long before = memberCount(em).fetchOne();
+
+        em.persist(new Member("member1", 10));
+
+        assertThat(countExecutor.count(this::memberCount).getAsLong()).isEqualTo(before + 1);
+    }
+}
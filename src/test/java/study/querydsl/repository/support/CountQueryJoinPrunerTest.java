@@ -0,0 +1,135 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
+import javax.persistence.LockModeType;
+import javax.persistence.Query;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@SpringBootTest
+@Transactional
+class CountQueryJoinPrunerTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    QueryInstrumentation instrumentation;
+
+    JPAQueryFactory queryFactory;
+
+    @BeforeEach
+    public void before() {
+        queryFactory = new JPAQueryFactory(em);
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("member5", 50));
+    }
+
+    /**
+     * team 을 참조하는 조건이 없으면 left join 을 제거해도 카운트가 같다.
+     */
+    @Test
+    public void pruneUnreferencedLeftJoin() {
+        JPAQuery<Long> query = queryFactory
+                .select(member.count())
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(member.age.goe(20));
+
+        JPAQuery<Long> pruned = CountQueryJoinPruner.prune(em, query);
+
+        assertThat(pruned.toString()).doesNotContain("join");
+        assertThat(pruned.fetchOne()).isEqualTo(query.fetchOne());
+    }
+
+    /**
+     * 힌트, 락 모드, 플러시 모드는 쿼리 인스턴스에 있으므로 제거한 쿼리에도 그대로 옮겨야 한다.
+     */
+    @Test
+    public void keepHintsLockModeAndFlushMode() {
+        JPAQuery<Long> query = queryFactory
+                .select(member.count())
+                .from(member)
+                .leftJoin(member.team, team)
+                .setHint("javax.persistence.query.timeout", 1000)
+                .setLockMode(LockModeType.PESSIMISTIC_READ)
+                .setFlushMode(FlushModeType.COMMIT);
+        JPAQuery<Long> instrumented = new InstrumentedJPAQueryFactory(em, instrumentation)
+                .select(member.count())
+                .from(member)
+                .leftJoin(member.team, team)
+                .setHint("javax.persistence.query.timeout", 1000)
+                .setLockMode(LockModeType.PESSIMISTIC_READ)
+                .setFlushMode(FlushModeType.COMMIT);
+
+        for (JPAQuery<Long> pruned : List.of(CountQueryJoinPruner.prune(em, query), CountQueryJoinPruner.prune(em, instrumented))) {
+            assertThat(pruned.toString()).doesNotContain("join");
+            Query jpaQuery = pruned.createQuery();
+            assertThat(jpaQuery.getHints()).containsEntry("javax.persistence.query.timeout", 1000);
+            assertThat(jpaQuery.getLockMode()).isEqualTo(LockModeType.PESSIMISTIC_READ);
+            assertThat(jpaQuery.getFlushMode()).isEqualTo(FlushModeType.COMMIT);
+        }
+        assertThat(CountQueryJoinPruner.prune(em, instrumented)).isInstanceOf(InstrumentedJPAQuery.class);
+    }
+
+    @Test
+    public void keepReferencedLeftJoin() {
+        JPAQuery<Long> query = queryFactory
+                .select(member.count())
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(team.name.eq("teamB"));
+
+        JPAQuery<Long> pruned = CountQueryJoinPruner.prune(em, query);
+
+        assertThat(pruned).isSameAs(query);
+    }
+
+    /**
+     * inner join 은 팀이 없는 회원을 걸러내므로 제거하면 안 된다.
+     */
+    @Test
+    public void keepInnerJoin() {
+        JPAQuery<Long> query = queryFactory
+                .select(member.count())
+                .from(member)
+                .join(member.team, team);
+
+        assertThat(CountQueryJoinPruner.prune(em, query)).isSameAs(query);
+    }
+
+    /**
+     * to-many 조인은 로우 수가 늘어나므로 제거하면 안 된다.
+     */
+    @Test
+    public void keepToManyJoin() {
+        JPAQuery<Long> query = queryFactory
+                .select(team.count())
+                .from(team)
+                .leftJoin(team.members, member);
+
+        assertThat(CountQueryJoinPruner.prune(em, query)).isSameAs(query);
+    }
+}
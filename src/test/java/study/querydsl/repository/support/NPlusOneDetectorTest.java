@@ -0,0 +1,125 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@SpringBootTest
+@Transactional
+class NPlusOneDetectorTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private double detected() {
+        return meterRegistry.get("jpa.n-plus-one").tag("shape", Team.class.getName()).counter().count();
+    }
+
+    private void saveMembersOfDifferentTeams(int count) {
+        for (int i = 0; i < count; i++) {
+            Team team = new Team("nPlusOneTeam" + i);
+            em.persist(team);
+            em.persist(new Member("nPlusOneMember" + i, i, team));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void lazyLoadPerMember() {
+        saveMembersOfDifferentTeams(5);
+        JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+
+        //회원을 하나씩 조회하면서 팀을 읽으면 배치 로딩으로도 묶이지 않는다.
+        //테스트는 strict 모드: 5번째 지연 로딩에서 실패
+        assertThatThrownBy(() -> {
+            for (int i = 0; i < 5; i++) {
+                Member found = queryFactory
+                        .selectFrom(member)
+                        .where(member.username.eq("nPlusOneMember" + i))
+                        .fetchOne();
+                found.getTeam().getName();
+            }
+        })
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("N+1 suspected")
+                .hasMessageContaining(Team.class.getName());
+        assertThat(detected()).isGreaterThanOrEqualTo(1);
+    }
+
+    /**
+     * 2차 캐시(Team @Cache)에 있는 팀은 SQL 없이 로딩되므로 N+1 로 세지 않는다.
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void lazyLoadFromSecondLevelCache() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> saveMembersOfDifferentTeams(5)); //커밋하면 팀이 2차 캐시에 들어간다.
+        try {
+            //커밋 뒤에 시작한 트랜잭션에서 회원을 하나씩 조회하면서 팀을 읽는다.
+            tx.executeWithoutResult(status -> {
+                JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+                for (int i = 0; i < 5; i++) {
+                    Member found = queryFactory
+                            .selectFrom(member)
+                            .where(member.username.eq("nPlusOneMember" + i))
+                            .fetchOne();
+                    assertThat(found.getTeam().getName()).isEqualTo("nPlusOneTeam" + i);
+                }
+            });
+        } finally {
+            tx.executeWithoutResult(status -> {
+                em.createQuery("delete from Member m where m.username like 'nPlusOneMember%'").executeUpdate();
+                em.createQuery("delete from Team t where t.name like 'nPlusOneTeam%'").executeUpdate();
+            });
+        }
+    }
+
+    @Test
+    public void batchFetch() {
+        saveMembersOfDifferentTeams(5);
+
+        List<Member> members = new JPAQueryFactory(em)
+                .selectFrom(member)
+                .where(member.username.startsWith("nPlusOneMember"))
+                .fetch();
+
+        //default_batch_fetch_size 로 첫 번째 지연 로딩에서 5개 팀을 함께 로딩
+        members.forEach(m -> assertThat(m.getTeam().getName()).startsWith("nPlusOneTeam"));
+    }
+
+    @Test
+    public void fetchJoin() {
+        saveMembersOfDifferentTeams(5);
+
+        List<Member> members = new JPAQueryFactory(em)
+                .selectFrom(member)
+                .join(member.team, team).fetchJoin()
+                .where(member.username.startsWith("nPlusOneMember"))
+                .fetch();
+
+        members.forEach(m -> assertThat(m.getTeam().getName()).startsWith("nPlusOneTeam"));
+    }
+}
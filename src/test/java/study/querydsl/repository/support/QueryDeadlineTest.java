@@ -0,0 +1,103 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+class QueryDeadlineTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    public void remainingBudgetBecomesTimeoutHint() {
+        QueryContext.Scope scope = QueryDeadline.open(Duration.ofMillis(1500));
+        try {
+            Query query = queryFactory.selectFrom(member).createQuery();
+            //JDBC 타임아웃은 초 단위이므로 올림
+            assertThat(query.getHints().get(QueryDeadline.TIMEOUT_HINT)).isEqualTo(2000);
+        } finally {
+            scope.close();
+        }
+        Query query = queryFactory.selectFrom(member).createQuery();
+        assertThat(query.getHints()).doesNotContainKey(QueryDeadline.TIMEOUT_HINT);
+    }
+
+    @Test
+    public void innerScopeCannotExtendDeadline() {
+        QueryContext.Scope outer = QueryDeadline.open(Duration.ofSeconds(1));
+        try {
+            QueryDeadline deadline = QueryDeadline.current();
+            QueryContext.Scope inner = QueryDeadline.open(Duration.ofMinutes(1));
+            try {
+                assertThat(QueryDeadline.current()).isSameAs(deadline);
+            } finally {
+                inner.close();
+            }
+            //안쪽 범위를 닫아도 바깥 기한은 그대로
+            assertThat(QueryDeadline.current()).isSameAs(deadline);
+        } finally {
+            outer.close();
+        }
+        assertThat(QueryDeadline.current()).isNull();
+    }
+
+    @Test
+    public void expiredBudgetFailsBeforeExecution() {
+        QueryContext.Scope scope = QueryDeadline.open(Duration.ZERO);
+        try {
+            assertThatThrownBy(() -> queryFactory.selectFrom(member).fetch())
+                    .isInstanceOf(QueryDeadlineExceededException.class);
+        } finally {
+            scope.close();
+        }
+    }
+
+    @Test
+    public void cancelInFlightStatementAtDeadline() {
+        //H2 에서 수 초 이상 걸리는 쿼리
+        Query slow = em.createNativeQuery("with recursive t(n) as (select 1 union all select n + 1 from t where n < 100000000) " +
+                "select count(*) from t");
+
+        long start = System.nanoTime();
+        QueryContext.Scope scope = QueryDeadline.open(Duration.ofMillis(200));
+        try {
+            assertThatThrownBy(() -> QueryDeadline.guard(em, slow::getSingleResult))
+                    .isInstanceOf(QueryDeadlineExceededException.class);
+        } finally {
+            scope.close();
+        }
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+    }
+
+    @Test
+    public void serviceUnavailableWhenBudgetIsSpent() throws Exception {
+        mockMvc.perform(get("/v3/members").header("X-Request-Timeout", "0"))
+                .andExpect(status().isServiceUnavailable());
+        mockMvc.perform(get("/v3/members").header("X-Request-Timeout", "1000"))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,96 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class QueryInstrumentationTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private long count(String method, String shape, String kind) {
+        return meterRegistry.get("repository.query")
+                .tag("method", method).tag("shape", shape).tag("kind", kind)
+                .timer().count();
+    }
+
+    @Test
+    public void timerPerMethodAndShape() {
+        Team team = new Team("instrumentTeam");
+        em.persist(team);
+        em.persist(new Member("instrumentMember", 10, team));
+        em.flush();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("instrumentMember");
+        condition.setAgeGoe(5);
+        String shape = Integer.toString(condition.shape());
+
+        memberRepository.search(condition);
+        long before = count("MemberRepositoryImpl.search", shape, "list");
+        assertThat(memberRepository.search(condition)).hasSize(1);
+        assertThat(count("MemberRepositoryImpl.search", shape, "list")).isEqualTo(before + 1);
+
+        assertThat(meterRegistry.get("repository.query.rows")
+                .tag("method", "MemberRepositoryImpl.search").tag("shape", shape)
+                .summary().totalAmount()).isGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    public void jfrEvent() throws Exception {
+        Team team = new Team("instrumentTeamJfr");
+        em.persist(team);
+        em.persist(new Member("instrumentMemberJfr", 10, team));
+        em.flush();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("instrumentMemberJfr");
+
+        Path file = Files.createTempFile("repository-query", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(RepositoryQueryEvent.class).withThreshold(java.time.Duration.ZERO);
+            recording.start();
+            memberRepository.search(condition);
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> "MemberRepositoryImpl.search".equals(e.getString("method")))
+                    .collect(Collectors.toList());
+            assertThat(events).hasSize(1);
+            RecordedEvent event = events.get(0);
+            assertThat(event.getString("shape")).isEqualTo(Integer.toString(condition.shape()));
+            assertThat(event.getLong("rows")).isEqualTo(1);
+            assertThat(event.getDuration("fetchTime")).isPositive();
+            assertThat(event.getDuration("mappingTime")).isPositive();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
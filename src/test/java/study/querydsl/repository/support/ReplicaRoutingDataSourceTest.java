@@ -0,0 +1,179 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * H2 메모리 DB 두 개로 primary(spring.datasource) 와 복제본(replica)을 흉내낸다.
+ * 실제 복제는 없으므로 복제본의 테이블과 heartbeat 는 테스트가 직접 넣는다.
+ * 읽기 전용 트랜잭션이 복제본으로 가는지 보려면 테스트 트랜잭션(쓰기)이 없어야 하므로 @Transactional 을 쓰지 않는다.
+ */
+@SpringBootTest(properties = {
+        "member.replica.enabled=true",
+        "member.replica.urls=" + ReplicaRoutingDataSourceTest.REPLICA_URL,
+        "member.replica.max-lag=500ms", //쓴 뒤 이만큼은 읽기도 primary
+        "member.replica.lag-check-interval=1h" //테스트에서 refresh() 로 직접 확인
+})
+class ReplicaRoutingDataSourceTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    javax.sql.DataSource dataSource;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @BeforeEach
+    public void before() {
+        replica.execute("create table if not exists team (team_id bigint primary key, name varchar(255))");
+        replica.execute("create table if not exists member (member_id bigint primary key, age integer not null, " +
+                "username varchar(255), team_id bigint)");
+        replica.execute("create table if not exists replica_heartbeat (id bigint primary key, beat_at bigint not null)");
+        replica.update("insert into member (member_id, age, username) values (1000000, 10, 'replicaMember')");
+        replicate(System.currentTimeMillis());
+    }
+
+    @AfterEach
+    public void after() {
+        replica.execute("drop table member");
+        replica.execute("drop table team");
+        replica.execute("drop table replica_heartbeat");
+        jdbcTemplate.update("delete from member where username = 'primaryMember'");
+    }
+
+    private void replicate(long heartbeat) {
+        replica.update("delete from replica_heartbeat");
+        replica.update("insert into replica_heartbeat (id, beat_at) values (1, ?)", heartbeat);
+        routingDataSource().refresh();
+    }
+
+    private ReplicaRoutingDataSource routingDataSource() {
+        try {
+            return dataSource.unwrap(ReplicaRoutingDataSource.class);
+        } catch (java.sql.SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MemberSearchCondition username(String username) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername(username);
+        return condition;
+    }
+
+    @Test
+    public void readOnlyTransactionGoesToReplica() throws InterruptedException {
+        memberJpaRepository.save(new Member("primaryMember", 20));
+        waitForReplication();
+
+        //검색(readOnly)은 복제본, 저장(쓰기)은 primary
+        List<MemberTeamDto> result = memberRepository.search(username("replicaMember"));
+        assertThat(result).extracting("username").containsExactly("replicaMember");
+        assertThat(memberRepository.search(username("primaryMember"))).isEmpty();
+
+        //트랜잭션 밖은 primary
+        assertThat(jdbcTemplate.queryForObject("select count(*) from member where username = 'primaryMember'", Long.class))
+                .isEqualTo(1);
+    }
+
+    /**
+     * 쓴 직후의 읽기는 아직 복제되지 않았을 수 있으므로 max-lag 동안은 primary 에서 읽는다.
+     * (복제본에서 읽은 옛 결과가 무효화 직후 다시 캐시되지 않도록)
+     */
+    @Test
+    public void readYourWritesWithinMaxLag() throws InterruptedException {
+        double afterWrites = meterRegistry.get("datasource.route").tag("target", "after-write").counter().count();
+
+        memberJpaRepository.save(new Member("primaryMember", 20));
+
+        assertThat(memberRepository.search(username("primaryMember"))).extracting("username").containsExactly("primaryMember");
+        assertThat(meterRegistry.get("datasource.route").tag("target", "after-write").counter().count())
+                .isGreaterThan(afterWrites);
+
+        //max-lag 가 지나면 다시 복제본 (테스트의 복제본에는 복제되지 않는다)
+        waitForReplication();
+        assertThat(memberRepository.search(username("primaryMember"))).isEmpty();
+    }
+
+    private static void waitForReplication() throws InterruptedException {
+        Thread.sleep(600);
+    }
+
+    @Test
+    public void fallbackToPrimaryWhenReplicaLags() {
+        double fallbacks = meterRegistry.get("datasource.route").tag("target", "fallback").counter().count();
+
+        replicate(System.currentTimeMillis() - 60_000);
+
+        assertThat(memberRepository.search(username("replicaMember"))).isEmpty();
+        assertThat(meterRegistry.get("datasource.route").tag("target", "fallback").counter().count())
+                .isGreaterThan(fallbacks);
+        assertThat(meterRegistry.get("datasource.replica.lag").tag("replica", "replica-1").gauge().value())
+                .isGreaterThanOrEqualTo(60_000);
+
+        //따라잡으면 다시 복제본
+        replicate(System.currentTimeMillis());
+        assertThat(memberRepository.search(username("replicaMember"))).hasSize(1);
+    }
+
+    /**
+     * 확인 주기가 max-lag 보다 길어도 이전 확인 때 쓴 beat 를 받은 복제본은 뒤처지지 않았다.
+     * 받지 못했으면 그 beat 를 쓴 뒤로 지난 시간만큼 뒤처졌다.
+     */
+    @Test
+    public void lagMeasuredAgainstPreviousBeat() throws InterruptedException {
+        waitForReplication();
+        replicate(jdbcTemplate.queryForObject("select beat_at from replica_heartbeat where id = 1", Long.class));
+
+        assertThat(meterRegistry.get("datasource.replica.lag").tag("replica", "replica-1").gauge().value()).isZero();
+        assertThat(memberRepository.search(username("replicaMember"))).hasSize(1);
+
+        //이번 beat 는 복제하지 않는다.
+        double fallbacks = meterRegistry.get("datasource.route").tag("target", "fallback").counter().count();
+        waitForReplication();
+        routingDataSource().refresh();
+
+        assertThat(meterRegistry.get("datasource.replica.lag").tag("replica", "replica-1").gauge().value())
+                .isGreaterThanOrEqualTo(600);
+        assertThat(memberRepository.search(username("replicaMember"))).isEmpty();
+        assertThat(meterRegistry.get("datasource.route").tag("target", "fallback").counter().count())
+                .isGreaterThan(fallbacks);
+    }
+
+    @Test
+    public void fallbackToPrimaryWhenReplicaIsDown() {
+        replica.execute("drop table replica_heartbeat");
+        routingDataSource().refresh();
+        replica.execute("create table replica_heartbeat (id bigint primary key, beat_at bigint not null)");
+
+        assertThat(memberRepository.search(username("replicaMember"))).isEmpty();
+        assertThat(meterRegistry.get("datasource.replica.lag").tag("replica", "replica-1").gauge().value()).isNaN();
+    }
+}
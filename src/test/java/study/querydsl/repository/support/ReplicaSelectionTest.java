@@ -0,0 +1,94 @@
+package study.querydsl.repository.support;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ReplicaRoutingDataSource 복제본 선택 (스프링 없이 H2 메모리 DB 세 개)
+ */
+class ReplicaSelectionTest {
+
+    ReplicaRoutingDataSource routing;
+
+    private static HikariDataSource pool(String name) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setPoolName(name);
+        return dataSource;
+    }
+
+    private ReplicaRoutingDataSource routing(String selection) {
+        HikariDataSource primary = pool("selection-primary");
+        List<HikariDataSource> replicas = List.of(pool("replica-1"), pool("replica-2"));
+        for (HikariDataSource replica : replicas) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(replica);
+            jdbcTemplate.execute("create table if not exists replica_heartbeat (id bigint primary key, beat_at bigint not null)");
+            jdbcTemplate.update("delete from replica_heartbeat");
+            jdbcTemplate.update("insert into replica_heartbeat (id, beat_at) values (1, ?)", System.currentTimeMillis());
+        }
+        routing = new ReplicaRoutingDataSource(primary, replicas, selection, Duration.ofSeconds(2), Duration.ofHours(1));
+        routing.afterPropertiesSet();
+        return routing;
+    }
+
+    @AfterEach
+    public void after() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        routing.close();
+    }
+
+    @Test
+    public void writesGoToPrimary() {
+        ReplicaRoutingDataSource routing = routing("round-robin");
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+    }
+
+    @Test
+    public void roundRobin() {
+        ReplicaRoutingDataSource routing = routing("round-robin");
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(List.of(routing.determineCurrentLookupKey(), routing.determineCurrentLookupKey(),
+                routing.determineCurrentLookupKey(), routing.determineCurrentLookupKey()))
+                .containsExactly("replica-1", "replica-2", "replica-1", "replica-2");
+    }
+
+    @Test
+    public void leastLoaded() throws Exception {
+        ReplicaRoutingDataSource routing = routing("least-loaded");
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("replica-1");
+        try (Connection busy = routing.getConnection()) {
+            //replica-1 커넥션을 쓰는 동안은 replica-2
+            assertThat(busy.getMetaData().getURL()).contains("replica-1");
+            assertThat(routing.determineCurrentLookupKey()).isEqualTo("replica-2");
+            assertThat(routing.determineCurrentLookupKey()).isEqualTo("replica-2");
+        }
+    }
+
+    /**
+     * 쓴 직후에는 max-lag 동안 읽기 전용 트랜잭션도 primary 로 보낸다.
+     */
+    @Test
+    public void readsGoToPrimaryAfterWrite() {
+        ReplicaRoutingDataSource routing = routing("round-robin");
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("replica-1");
+
+        routing.markWritten();
+
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+    }
+}
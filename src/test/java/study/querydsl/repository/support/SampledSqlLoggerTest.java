@@ -0,0 +1,64 @@
+package study.querydsl.repository.support;
+
+import com.p6spy.engine.common.StatementInformation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SampledSqlLoggerTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private double count(String result) {
+        return meterRegistry.get("sql.log").tag("result", result).counter().count();
+    }
+
+    private static StatementInformation statement(String sql) {
+        StatementInformation info = new StatementInformation(null);
+        info.setStatementQuery(sql);
+        return info;
+    }
+
+    @Test
+    public void sampleEveryStatement() throws Exception {
+        SampledSqlLogger logger = new SampledSqlLogger(meterRegistry, true, 1, Duration.ofSeconds(1), true, true, 16);
+        try {
+            logger.onAfterAnyExecute(statement("select 1"), TimeUnit.MILLISECONDS.toNanos(1), null);
+            logger.onAfterAnyExecute(statement("select 2"), TimeUnit.MILLISECONDS.toNanos(1), null);
+            assertThat(count("sampled")).isEqualTo(2);
+            assertThat(count("slow")).isZero();
+        } finally {
+            logger.destroy();
+        }
+    }
+
+    @Test
+    public void slowAndFailedStatementsAlwaysLogged() throws Exception {
+        //sample-rate 0: 샘플링 없이 느린 쿼리, 실패한 쿼리만
+        SampledSqlLogger logger = new SampledSqlLogger(meterRegistry, true, 0, Duration.ofMillis(100), false, false, 16);
+        try {
+            logger.onAfterAnyExecute(statement("select 1"), TimeUnit.MILLISECONDS.toNanos(1), null);
+            logger.onAfterAnyExecute(statement("select 2"), TimeUnit.MILLISECONDS.toNanos(200), null);
+            logger.onAfterAnyExecute(statement("select 3"), TimeUnit.MILLISECONDS.toNanos(1), new SQLException("fail"));
+            assertThat(count("sampled")).isZero();
+            assertThat(count("slow")).isEqualTo(2);
+        } finally {
+            logger.destroy();
+        }
+    }
+
+    @Test
+    public void disabled() throws Exception {
+        SampledSqlLogger logger = new SampledSqlLogger(meterRegistry, false, 1, Duration.ZERO, true, false, 16);
+        logger.onAfterAnyExecute(statement("select 1"), TimeUnit.MILLISECONDS.toNanos(1), null);
+        assertThat(count("sampled")).isZero();
+        assertThat(count("slow")).isZero();
+        logger.destroy();
+    }
+}
@@ -0,0 +1,95 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private double count(String result) {
+        return meterRegistry.get("test.singleflight").tag("result", result).counter().count();
+    }
+
+    @Test
+    public void coalesceConcurrentCalls() throws Exception {
+        SingleFlight<String, List<String>> singleFlight = new SingleFlight<>("test", Duration.ofSeconds(3), meterRegistry);
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger queries = new AtomicInteger();
+
+        CompletableFuture<List<String>> leader = CompletableFuture.supplyAsync(() -> singleFlight.execute("key", () -> {
+            queries.incrementAndGet();
+            leaderStarted.countDown();
+            await(release);
+            return List.of("result");
+        }));
+        leaderStarted.await(3, TimeUnit.SECONDS);
+
+        CompletableFuture<List<String>> follower = CompletableFuture.supplyAsync(() -> singleFlight.execute("key", () -> {
+            queries.incrementAndGet();
+            return List.of("follower");
+        }));
+        //follower 가 leader 의 결과를 기다리기 시작할 때까지 잠시 대기
+        Thread.sleep(100);
+        release.countDown();
+
+        assertThat(follower.get(3, TimeUnit.SECONDS)).isSameAs(leader.get(3, TimeUnit.SECONDS));
+        assertThat(queries.get()).isEqualTo(1);
+        assertThat(count("coalesced")).isEqualTo(1);
+
+        //진행 중인 조회가 없으면 새로 조회
+        assertThat(singleFlight.execute("key", () -> List.of("next"))).containsExactly("next");
+    }
+
+    @Test
+    public void timeoutFallsBackToOwnQuery() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("test", Duration.ofMillis(50), meterRegistry);
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> singleFlight.execute("key", () -> {
+            leaderStarted.countDown();
+            await(release);
+            return "leader";
+        }));
+        leaderStarted.await(3, TimeUnit.SECONDS);
+
+        assertThat(singleFlight.execute("key", () -> "own")).isEqualTo("own");
+        assertThat(count("timeout")).isEqualTo(1);
+
+        release.countDown();
+        assertThat(leader.get(3, TimeUnit.SECONDS)).isEqualTo("leader");
+    }
+
+    @Test
+    public void leaderFailurePropagates() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>("test", Duration.ofSeconds(1), meterRegistry);
+
+        assertThatThrownBy(() -> singleFlight.execute("key", () -> {
+            throw new IllegalStateException("db error");
+        })).isInstanceOf(IllegalStateException.class);
+
+        //실패한 호출은 남아있지 않음
+        assertThat(singleFlight.execute("key", () -> "retry")).isEqualTo("retry");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(3, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}